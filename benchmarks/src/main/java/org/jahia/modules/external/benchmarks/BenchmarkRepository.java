@@ -0,0 +1,285 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.benchmarks;
+
+import org.apache.jackrabbit.core.security.JahiaLoginModule;
+import org.apache.jackrabbit.core.security.JahiaPrivilegeRegistry;
+import org.jahia.jaas.JahiaPrincipal;
+import org.jahia.modules.external.ExternalContentStoreProvider;
+import org.jahia.modules.external.ExternalDataSource;
+import org.jahia.modules.external.ExternalRepositoryImpl;
+import org.jahia.modules.external.ExternalSessionImpl;
+import org.jahia.services.content.JCRSessionFactory;
+import org.jahia.services.content.JCRSessionWrapper;
+import org.jahia.services.content.nodetypes.NodeTypeRegistry;
+import org.jahia.services.content.nodetypes.ParseException;
+import org.jahia.services.usermanager.JahiaUserManagerService;
+import org.jahia.settings.SettingsBean;
+import org.jahia.utils.security.AccessManagerUtils;
+import org.jahia.utils.security.PathWrapper;
+import org.mockito.MockedConstruction;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.springframework.core.io.ClassPathResource;
+
+import javax.jcr.NamespaceException;
+import javax.jcr.NamespaceRegistry;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import javax.jcr.security.Privilege;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * An {@link ExternalRepositoryImpl} over a data source, outside of Jahia : the provider uses the identifier mapping of
+ * {@link H2IdentifierMapping}, and the static Jahia services used by the sessions are replaced by in-memory stand-ins
+ * (settings, user manager, node types loaded from <code>benchmarks.cnd</code> and privileges).
+ * <p>
+ * The stand-ins are registered for the thread creating the repository only, benchmarks using it must run on a single
+ * thread. ACLs are not evaluated, as it requires the JCR system session : the read decisions have to be granted with
+ * {@link #putReadDecisions(String, Collection, boolean)} before reading nodes, or computed by a stand-in set with
+ * {@link #evaluateAcls(Predicate)}.
+ */
+public class BenchmarkRepository {
+
+    public static final String WORKSPACE = "default";
+    public static final String READ_PRIVILEGE = "jcr:read_" + WORKSPACE;
+
+    private final H2IdentifierMapping mapping;
+    private final ExternalContentStoreProvider provider;
+    private final ExternalRepositoryImpl repository;
+
+    private final MockedStatic<SettingsBean> settings;
+    private final MockedStatic<JahiaUserManagerService> userManager;
+    private final MockedStatic<NodeTypeRegistry> nodeTypes;
+    private final MockedConstruction<JahiaPrivilegeRegistry> privileges;
+    private MockedStatic<JCRSessionFactory> sessionFactory;
+    private MockedStatic<AccessManagerUtils> accessManager;
+
+    /**
+     * @param name       the name of the identifier mapping database, each instance should use its own
+     * @param dataSource the data source of the provider
+     * @param cacheSize  the maximum size of the data and permission caches of the repository
+     */
+    public BenchmarkRepository(String name, ExternalDataSource dataSource, long cacheSize) throws RepositoryException {
+        mapping = new H2IdentifierMapping(name);
+
+        SettingsBean settingsBean = Mockito.mock(SettingsBean.class);
+        Mockito.when(settingsBean.getAccessManagerPathPermissionCacheMaxSize()).thenReturn(100);
+        settings = Mockito.mockStatic(SettingsBean.class);
+        settings.when(SettingsBean::getInstance).thenReturn(settingsBean);
+
+        JahiaUserManagerService userManagerService = Mockito.mock(JahiaUserManagerService.class);
+        Mockito.when(userManagerService.getRootUserName()).thenReturn("root");
+        userManager = Mockito.mockStatic(JahiaUserManagerService.class);
+        userManager.when(JahiaUserManagerService::getInstance).thenReturn(userManagerService);
+
+        NodeTypeRegistry nodeTypeRegistry = new NodeTypeRegistry();
+        nodeTypes = Mockito.mockStatic(NodeTypeRegistry.class);
+        nodeTypes.when(NodeTypeRegistry::getInstance).thenReturn(nodeTypeRegistry);
+        try {
+            nodeTypeRegistry.addDefinitionsFile(new ClassPathResource("benchmarks.cnd", getClass()), "benchmarks");
+        } catch (IOException | ParseException e) {
+            close();
+            throw new RepositoryException(e);
+        }
+
+        privileges = Mockito.mockConstruction(JahiaPrivilegeRegistry.class, (registry, context) ->
+                Mockito.when(registry.getPrivilege(Mockito.anyString(), Mockito.any()))
+                        .thenAnswer(invocation -> privilege(invocation.getArgument(0))));
+
+        provider = new ExternalContentStoreProvider();
+        provider.setKey(H2IdentifierMapping.PROVIDER_KEY);
+        provider.setMountPoint("/mounts/" + name);
+        provider.setDataSource(dataSource);
+        provider.setExternalProviderInitializerService(mapping.getService());
+        provider.setDataCacheEnabled(true);
+        provider.setDataCacheMaxSize(cacheSize);
+        provider.setDataCacheTimeToLive(3600);
+        provider.setPermissionCacheMaxSize(cacheSize);
+        provider.setPermissionCacheTimeToLive(3600);
+
+        repository = new ExternalRepositoryImpl(provider, dataSource, new InMemoryNamespaceRegistry(new HashMap<>(nodeTypeRegistry.getNamespaces())));
+        repository.setProviderKey(H2IdentifierMapping.PROVIDER_KEY);
+    }
+
+    private static Privilege privilege(String name) {
+        Privilege privilege = Mockito.mock(Privilege.class);
+        Mockito.when(privilege.getName()).thenReturn(name);
+        return privilege;
+    }
+
+    public ExternalRepositoryImpl getRepository() {
+        return repository;
+    }
+
+    public ExternalContentStoreProvider getProvider() {
+        return provider;
+    }
+
+    public H2IdentifierMapping getMapping() {
+        return mapping;
+    }
+
+    /**
+     * Opens a new session, with empty session caches.
+     */
+    public ExternalSessionImpl login(String userId) {
+        SimpleCredentials credentials = new SimpleCredentials(userId, new char[0]);
+        credentials.setAttribute(JahiaLoginModule.REALM_ATTRIBUTE, null);
+        return new ExternalSessionImpl(repository, credentials, WORKSPACE);
+    }
+
+    /**
+     * Stores read decisions for the user in the permission cache of the repository, as if its ACLs had been evaluated.
+     */
+    public void putReadDecisions(String userId, Collection<String> paths, boolean granted) {
+        String principalKey = userId + "/null";
+        for (String path : paths) {
+            repository.getPermissionCache().put(WORKSPACE, principalKey, path, READ_PRIVILEGE, granted);
+        }
+    }
+
+    /**
+     * Replaces the ACL evaluation done on a permission cache miss : the privileges are granted on the JCR paths (with
+     * the mount point) accepted by the specified predicate. Can only be called once.
+     */
+    @SuppressWarnings("unchecked")
+    public void evaluateAcls(Predicate<String> granted) throws RepositoryException {
+        JCRSessionFactory sessionFactoryInstance = Mockito.mock(JCRSessionFactory.class);
+        JCRSessionWrapper systemSession = Mockito.mock(JCRSessionWrapper.class);
+        Mockito.when(sessionFactoryInstance.getCurrentSystemSession(Mockito.anyString(), Mockito.any(), Mockito.any())).thenReturn(systemSession);
+        sessionFactory = Mockito.mockStatic(JCRSessionFactory.class);
+        sessionFactory.when(JCRSessionFactory::getInstance).thenReturn(sessionFactoryInstance);
+
+        accessManager = Mockito.mockStatic(AccessManagerUtils.class);
+        accessManager.when(() -> AccessManagerUtils.isGranted(Mockito.any(PathWrapper.class), Mockito.any(Set.class), Mockito.any(Session.class),
+                Mockito.any(JahiaPrincipal.class), Mockito.anyString(), Mockito.anyBoolean(), Mockito.any(Map.class), Mockito.any(Map.class),
+                Mockito.any(JahiaPrivilegeRegistry.class)))
+                .thenAnswer(invocation -> granted.test((String) invocation.getArgument(0, PathWrapper.class).getInnerObject()));
+    }
+
+    /**
+     * Empties the data cache of the repository and the ID cache of the identifier mapping, the permission cache is
+     * kept.
+     */
+    public void clearCaches() {
+        if (repository.getDataCache() != null) {
+            repository.getDataCache().invalidateAll();
+        }
+        mapping.clearCache();
+    }
+
+    public void close() {
+        if (accessManager != null) {
+            accessManager.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+        if (privileges != null) {
+            privileges.close();
+        }
+        nodeTypes.close();
+        userManager.close();
+        settings.close();
+        mapping.close();
+    }
+
+    /**
+     * Namespace registry holding the namespaces of the loaded definitions.
+     */
+    private static class InMemoryNamespaceRegistry implements NamespaceRegistry {
+
+        private final Map<String, String> namespaces;
+
+        InMemoryNamespaceRegistry(Map<String, String> namespaces) {
+            this.namespaces = namespaces;
+        }
+
+        @Override
+        public void registerNamespace(String prefix, String uri) {
+            namespaces.put(prefix, uri);
+        }
+
+        @Override
+        public void unregisterNamespace(String prefix) {
+            namespaces.remove(prefix);
+        }
+
+        @Override
+        public String[] getPrefixes() {
+            return namespaces.keySet().toArray(new String[namespaces.size()]);
+        }
+
+        @Override
+        public String[] getURIs() {
+            return namespaces.values().toArray(new String[namespaces.size()]);
+        }
+
+        @Override
+        public String getURI(String prefix) throws NamespaceException {
+            String uri = namespaces.get(prefix);
+            if (uri == null) {
+                throw new NamespaceException("Unknown prefix " + prefix);
+            }
+            return uri;
+        }
+
+        @Override
+        public String getPrefix(String uri) throws NamespaceException {
+            for (Map.Entry<String, String> entry : namespaces.entrySet()) {
+                if (entry.getValue().equals(uri)) {
+                    return entry.getKey();
+                }
+            }
+            throw new NamespaceException("Unknown namespace " + uri);
+        }
+    }
+}
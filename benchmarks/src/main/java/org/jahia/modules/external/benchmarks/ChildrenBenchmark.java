@@ -0,0 +1,134 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.benchmarks;
+
+import org.jahia.modules.external.ExternalSessionImpl;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Children reading with {@link org.jahia.modules.external.ExternalNodeImpl#getNodes()} on a large root node, in a new
+ * session with empty data and ID caches : all children loaded in one batch, or page by page as configured by
+ * {@link org.jahia.modules.external.ExternalContentStoreProvider#setChildrenPageSize(int)}. The first page benchmark
+ * reads only the first nodes, as a listing showing the first results would do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class ChildrenBenchmark {
+
+    private static final String USER = "benchmark";
+
+    @Param({"1000", "10000", "50000"})
+    private int childrenCount;
+
+    @Param({"1000"})
+    private int pageSize;
+
+    private BenchmarkRepository repository;
+    private ExternalSessionImpl session;
+
+    @Setup(Level.Trial)
+    public void setUp() throws RepositoryException {
+        InMemoryDataSource dataSource = new InMemoryDataSource(childrenCount);
+        repository = new BenchmarkRepository("children", dataSource, childrenCount + 1);
+        List<String> paths = new ArrayList<>(childrenCount + 1);
+        paths.add("/");
+        for (String name : dataSource.getChildren("/")) {
+            paths.add("/" + name);
+        }
+        repository.putReadDecisions(USER, paths, true);
+        H2IdentifierMapping mapping = repository.getMapping();
+        mapping.getService().mapInternalIdentifiers(paths, H2IdentifierMapping.PROVIDER_KEY, mapping.getProviderId());
+    }
+
+    @Setup(Level.Invocation)
+    public void newSession() {
+        repository.clearCaches();
+        session = repository.login(USER);
+    }
+
+    @TearDown(Level.Invocation)
+    public void logout() {
+        session.logout();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        repository.close();
+    }
+
+    private void readChildren(int pageSize, int limit, Blackhole blackhole) throws RepositoryException {
+        repository.getProvider().setChildrenPageSize(pageSize);
+        NodeIterator children = session.getRootNode().getNodes();
+        for (int i = 0; i < limit && children.hasNext(); i++) {
+            blackhole.consume(children.nextNode());
+        }
+    }
+
+    @Benchmark
+    public void allChildrenInBatch(Blackhole blackhole) throws RepositoryException {
+        readChildren(0, Integer.MAX_VALUE, blackhole);
+    }
+
+    @Benchmark
+    public void allChildrenByPage(Blackhole blackhole) throws RepositoryException {
+        readChildren(pageSize, Integer.MAX_VALUE, blackhole);
+    }
+
+    @Benchmark
+    public void firstChildrenByPage(Blackhole blackhole) throws RepositoryException {
+        readChildren(pageSize, 100, blackhole);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.benchmarks;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+import org.apache.commons.lang.StringUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.jahia.modules.external.id.ExternalProviderID;
+import org.jahia.modules.external.id.ExternalProviderInitializerServiceImpl;
+import org.jahia.modules.external.id.UuidMapping;
+
+import javax.jcr.RepositoryException;
+
+/**
+ * Stand-in for the identifier mapping store of Jahia : the {@link ExternalProviderInitializerServiceImpl} with its
+ * Hibernate entities in an in-memory H2 database, and an unbounded EhCache ID cache.
+ */
+public class H2IdentifierMapping {
+
+    public static final String PROVIDER_KEY = "benchmark";
+
+    private final SessionFactory sessionFactory;
+    private final CacheManager cacheManager;
+    private final Cache idCache;
+    private final ExternalProviderInitializerServiceImpl service;
+    private final String providerId;
+
+    /**
+     * @param name the name of the H2 database, each instance should use its own
+     */
+    public H2IdentifierMapping(String name) throws RepositoryException {
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(UuidMapping.class)
+                .addAnnotatedClass(ExternalProviderID.class)
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.connection.driver_class", "org.h2.Driver")
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.connection.username", "sa")
+                .setProperty("hibernate.connection.password", "")
+                .setProperty("hibernate.hbm2ddl.auto", "create")
+                .setProperty("hibernate.jdbc.batch_size", "500")
+                .buildSessionFactory();
+
+        cacheManager = CacheManager.newInstance(new net.sf.ehcache.config.Configuration().name(name));
+        idCache = new Cache(new CacheConfiguration("ExternalIdentifierMapping", 0).eternal(true));
+        cacheManager.addCache(idCache);
+
+        service = new ExternalProviderInitializerServiceImpl();
+        service.setHibernateSessionFactory(sessionFactory);
+        service.setIdentifierCache(idCache);
+        providerId = StringUtils.leftPad(service.getProviderId(PROVIDER_KEY).toString(), 8, "f");
+    }
+
+    public ExternalProviderInitializerServiceImpl getService() {
+        return service;
+    }
+
+    public String getProviderId() {
+        return providerId;
+    }
+
+    /**
+     * Empties the ID cache, next lookups go to the database.
+     */
+    public void clearCache() {
+        idCache.removeAll();
+    }
+
+    public void close() {
+        cacheManager.shutdown();
+        sessionFactory.close();
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.benchmarks;
+
+import org.jahia.modules.external.ExternalData;
+import org.jahia.modules.external.ExternalDataSource;
+import org.jahia.modules.external.ExternalQuery;
+
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.PathNotFoundException;
+import javax.jcr.RepositoryException;
+import java.util.*;
+
+/**
+ * In-memory data source with a root folder holding a configurable number of children, standing in for a remote
+ * system. Every node is created when it is read, as a remote data source would do when parsing a response.
+ */
+public class InMemoryDataSource implements ExternalDataSource, ExternalDataSource.CanLoadChildrenInBatch,
+        ExternalDataSource.CanLoadChildrenByPage, ExternalDataSource.SearchableIterator {
+
+    private static final Set<String> SUPPORTED_NODE_TYPES = new HashSet<>(Arrays.asList("jnt:contentFolder", "jnt:bigText"));
+
+    private final int childrenCount;
+
+    public InMemoryDataSource(int childrenCount) {
+        this.childrenCount = childrenCount;
+    }
+
+    public static String childName(int i) {
+        return "child-" + i;
+    }
+
+    @Override
+    public List<String> getChildren(String path) throws RepositoryException {
+        if (!"/".equals(path)) {
+            return Collections.emptyList();
+        }
+        List<String> children = new ArrayList<>(childrenCount);
+        for (int i = 0; i < childrenCount; i++) {
+            children.add(childName(i));
+        }
+        return children;
+    }
+
+    @Override
+    public ChildrenCursor openChildrenCursor(String path) throws RepositoryException {
+        final int count = "/".equals(path) ? childrenCount : 0;
+        return new ChildrenCursor() {
+            private int offset = 0;
+
+            @Override
+            public List<ExternalData> nextPage(int limit) throws RepositoryException {
+                int end = Math.min(count, offset + limit);
+                List<ExternalData> children = new ArrayList<>(Math.max(0, end - offset));
+                for (; offset < end; offset++) {
+                    children.add(getItemByPath("/" + childName(offset)));
+                }
+                return children;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public long getChildrenCount(String path) throws RepositoryException {
+        return "/".equals(path) ? childrenCount : 0;
+    }
+
+    @Override
+    public List<ExternalData> getChildrenNodes(String path) throws RepositoryException {
+        List<ExternalData> children = new ArrayList<>();
+        for (String name : getChildren(path)) {
+            children.add(getItemByPath("/" + name));
+        }
+        return children;
+    }
+
+    @Override
+    public ExternalData getItemByIdentifier(String identifier) throws ItemNotFoundException {
+        try {
+            return getItemByPath(identifier);
+        } catch (PathNotFoundException e) {
+            throw new ItemNotFoundException(identifier);
+        }
+    }
+
+    @Override
+    public ExternalData getItemByPath(String path) throws PathNotFoundException {
+        if ("/".equals(path)) {
+            return new ExternalData("/", "/", "jnt:contentFolder", new HashMap<String, String[]>());
+        }
+        if (!itemExists(path)) {
+            throw new PathNotFoundException(path);
+        }
+        Map<String, String[]> properties = new HashMap<>();
+        properties.put("jcr:created", new String[]{"2017-10-10T10:50:43.000+02:00"});
+        properties.put("jcr:lastModified", new String[]{"2017-10-10T10:50:43.000+02:00"});
+        properties.put("text", new String[]{"Text of " + path});
+        return new ExternalData(path, path, "jnt:bigText", properties);
+    }
+
+    @Override
+    public List<String> search(ExternalQuery query) throws RepositoryException {
+        List<String> results = new ArrayList<>();
+        searchIterator(query).forEachRemaining(results::add);
+        return results;
+    }
+
+    @Override
+    public Iterator<String> searchIterator(ExternalQuery query) throws RepositoryException {
+        return getChildren("/").stream().map(name -> "/" + name).iterator();
+    }
+
+    @Override
+    public Set<String> getSupportedNodeTypes() {
+        return SUPPORTED_NODE_TYPES;
+    }
+
+    @Override
+    public boolean isSupportsHierarchicalIdentifiers() {
+        return true;
+    }
+
+    @Override
+    public boolean isSupportsUuid() {
+        return false;
+    }
+
+    @Override
+    public boolean itemExists(String path) {
+        if ("/".equals(path)) {
+            return true;
+        }
+        if (!path.startsWith("/child-")) {
+            return false;
+        }
+        try {
+            int i = Integer.parseInt(path.substring("/child-".length()));
+            return i >= 0 && i < childrenCount;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.benchmarks;
+
+import org.jahia.modules.external.ExternalSessionImpl;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node lookups with {@link ExternalSessionImpl#getNode(String)} and {@link ExternalSessionImpl#getNodeByIdentifier(String)},
+ * each in a new session as a request would do. Cold lookups start with empty data and ID caches, warm lookups hit
+ * them. Read decisions are granted beforehand, see {@link BenchmarkRepository}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class NodeLookupBenchmark {
+
+    private static final String USER = "benchmark";
+
+    @Param({"10000"})
+    private int nodesCount;
+
+    private BenchmarkRepository repository;
+    private List<String> paths;
+    private List<String> uuids;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws RepositoryException {
+        InMemoryDataSource dataSource = new InMemoryDataSource(nodesCount);
+        repository = new BenchmarkRepository("lookup", dataSource, nodesCount);
+        paths = new ArrayList<>(nodesCount);
+        for (String name : dataSource.getChildren("/")) {
+            paths.add("/" + name);
+        }
+        H2IdentifierMapping mapping = repository.getMapping();
+        Map<String, String> mapped = mapping.getService().mapInternalIdentifiers(paths, H2IdentifierMapping.PROVIDER_KEY, mapping.getProviderId());
+        uuids = new ArrayList<>(mapped.values());
+        repository.putReadDecisions(USER, paths, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        repository.close();
+    }
+
+    @State(Scope.Thread)
+    public static class NewSession {
+        private ExternalSessionImpl session;
+
+        @Setup(Level.Invocation)
+        public void login(NodeLookupBenchmark benchmark) {
+            session = benchmark.repository.login(USER);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ColdCaches {
+        @Setup(Level.Invocation)
+        public void clear(NodeLookupBenchmark benchmark) {
+            benchmark.repository.clearCaches();
+        }
+    }
+
+    private int next() {
+        index = (index + 1) % nodesCount;
+        return index;
+    }
+
+    @Benchmark
+    public Node getNodeCold(ColdCaches coldCaches, NewSession newSession) throws RepositoryException {
+        return newSession.session.getNode(paths.get(next()));
+    }
+
+    @Benchmark
+    public Node getNodeWarm(NewSession newSession) throws RepositoryException {
+        return newSession.session.getNode(paths.get(next()));
+    }
+
+    @Benchmark
+    public Node getNodeByIdentifierCold(ColdCaches coldCaches, NewSession newSession) throws RepositoryException {
+        return newSession.session.getNodeByIdentifier(uuids.get(next()));
+    }
+
+    @Benchmark
+    public Node getNodeByIdentifierWarm(NewSession newSession) throws RepositoryException {
+        return newSession.session.getNodeByIdentifier(uuids.get(next()));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public void getNodesInSessionCold(ColdCaches coldCaches, NewSession newSession, Blackhole blackhole) throws RepositoryException {
+        int start = next() / 100 * 100;
+        for (int i = start; i < start + 100 && i < nodesCount; i++) {
+            blackhole.consume(newSession.session.getNode(paths.get(i)));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.benchmarks;
+
+import org.jahia.modules.external.ExternalAccessControlManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.jcr.PathNotFoundException;
+import javax.jcr.RepositoryException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read checks with {@link ExternalAccessControlManager#checkRead(String)}, for decisions shared by the sessions of a
+ * provider : each principal has its own session. With the <code>hit</code> cache, the decisions of all principals are
+ * in the permission cache. With the <code>miss</code> cache, the permission cache only holds one decision and each
+ * check evaluates the ACLs and stores the decision, evicting the previous one.
+ * <p>
+ * The ACL evaluation relies on the JCR system session and is replaced by a stand-in, see {@link BenchmarkRepository} :
+ * it consumes <code>aclEvaluationTokens</code> of CPU (see {@link Blackhole#consumeCPU(long)}) to stand for the
+ * evaluation of the ACLs of the node and its ancestors, so the miss path gives the overhead of the cache on a miss
+ * on top of that cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class PermissionCacheBenchmark {
+
+    @Param({"10000"})
+    private int pathsCount;
+
+    @Param({"10"})
+    private int principalsCount;
+
+    @Param({"hit", "miss"})
+    private String cache;
+
+    @Param({"500"})
+    private long aclEvaluationTokens;
+
+    private BenchmarkRepository repository;
+    private String[] grantedPaths;
+    private String[] deniedPaths;
+    private ExternalAccessControlManager[] accessControlManagers;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws RepositoryException {
+        boolean miss = "miss".equals(cache);
+        repository = new BenchmarkRepository("permissions", new InMemoryDataSource(0), miss ? 1 : 2L * pathsCount * principalsCount);
+        repository.evaluateAcls(path -> {
+            Blackhole.consumeCPU(aclEvaluationTokens);
+            return !path.endsWith("/denied");
+        });
+        List<String> granted = new ArrayList<>(pathsCount);
+        List<String> denied = new ArrayList<>(pathsCount);
+        for (int i = 0; i < pathsCount; i++) {
+            String path = "/folder-" + (i % 100) + "/" + InMemoryDataSource.childName(i);
+            granted.add(path);
+            denied.add(path + "/denied");
+        }
+        grantedPaths = granted.toArray(new String[pathsCount]);
+        deniedPaths = denied.toArray(new String[pathsCount]);
+        accessControlManagers = new ExternalAccessControlManager[principalsCount];
+        for (int i = 0; i < principalsCount; i++) {
+            String user = "user-" + i;
+            if (!miss) {
+                repository.putReadDecisions(user, granted, true);
+                repository.putReadDecisions(user, denied, false);
+            }
+            accessControlManagers[i] = repository.login(user).getAccessControlManager();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Benchmark
+    public void checkReadGranted() throws RepositoryException {
+        index++;
+        accessControlManagers[index % principalsCount].checkRead(grantedPaths[index % pathsCount]);
+    }
+
+    @Benchmark
+    public PathNotFoundException checkReadDenied() throws RepositoryException {
+        index++;
+        try {
+            accessControlManagers[index % principalsCount].checkRead(deniedPaths[index % pathsCount]);
+            throw new IllegalStateException("Read should be denied");
+        } catch (PathNotFoundException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+import org.jahia.modules.external.ExternalDataSource;
+import org.jahia.modules.external.vfs.VFSDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import javax.jcr.RepositoryException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Children listing of {@link VFSDataSource} on a generated local directory tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VFSChildrenBenchmark {
+
+    private static final int FOLDERS_COUNT = 10;
+
+    @Param({"100", "1000"})
+    private int filesCount;
+
+    private Path root;
+    private VFSDataSource dataSource;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("vfs-benchmark");
+        byte[] content = "file content".getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < FOLDERS_COUNT; i++) {
+            Path folder = Files.createDirectory(root.resolve("folder-" + i));
+            for (int j = 0; j < filesCount; j++) {
+                Files.write(folder.resolve("file-" + j + ".txt"), content);
+            }
+        }
+        dataSource = new VFSDataSource();
+        dataSource.setRoot(root.toUri().toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    private String nextFolder() {
+        index = (index + 1) % FOLDERS_COUNT;
+        return "/folder-" + index;
+    }
+
+    @Benchmark
+    public List<?> getChildrenNodes() throws RepositoryException {
+        return dataSource.getChildrenNodes(nextFolder());
+    }
+
+    @Benchmark
+    public List<String> getChildren() throws RepositoryException {
+        return dataSource.getChildren(nextFolder());
+    }
+
+    @Benchmark
+    public List<?> getFirstChildrenPage() throws RepositoryException {
+        try (ExternalDataSource.ChildrenCursor cursor = dataSource.openChildrenCursor(nextFolder())) {
+            return cursor.nextPage(100);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.query;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merge of the extension results with the provider results done by {@link ExternalQueryManager} when a query matches
+ * both extended nodes and provider nodes. Half of the extension results are also returned by the provider.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryMergeBenchmark {
+
+    @Param({"100", "10000"})
+    private int extensionResultsCount;
+
+    @Param({"10000", "100000"})
+    private int providerResultsCount;
+
+    @Param({"-1", "100"})
+    private long limit;
+
+    private List<String> extensionResults;
+    private List<String> providerResults;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        extensionResults = new ArrayList<>(extensionResultsCount);
+        for (int i = 0; i < extensionResultsCount; i++) {
+            extensionResults.add("/" + (i % 2 == 0 ? "child-" : "extended-") + i);
+        }
+        providerResults = new ArrayList<>(providerResultsCount);
+        for (int i = 0; i < providerResultsCount; i++) {
+            providerResults.add("/child-" + i);
+        }
+    }
+
+    private List<String> merge(boolean skipDuplicates) {
+        List<String> results = new ArrayList<>(extensionResults);
+        Iterator<String> providerResult = providerResults.iterator();
+        ExternalQueryManager.mergeResults(results, providerResult, skipDuplicates, limit);
+        return results;
+    }
+
+    @Benchmark
+    public List<String> mergeSkippingDuplicates() {
+        return merge(true);
+    }
+
+    @Benchmark
+    public List<String> mergeExtendedNodesOnly() {
+        return merge(false);
+    }
+}
@@ -80,12 +80,14 @@ public class ExternalAccessControlManager implements AccessControlManager {
 
     private Map<String, Boolean> pathPermissionCache = null;
     private Map<Object, AccessManagerUtils.CompiledAcl> compiledAcls = new HashMap<>();
+    private final ExternalPermissionCache permissionCache;
 
     private JahiaPrivilegeRegistry registry;
 
     private final ExternalSessionImpl session;
     private final String workspaceName;
     private final JahiaPrincipal jahiaPrincipal;
+    private final String principalKey;
     private final boolean aclReadOnly;
     private final boolean writable;
     private final Privilege modifyAccessControlPrivilege;
@@ -108,6 +110,8 @@ public class ExternalAccessControlManager implements AccessControlManager {
 
         this.pathPermissionCache = Collections.synchronizedMap(new LRUMap(SettingsBean.getInstance().getAccessManagerPathPermissionCacheMaxSize()));
         this.jahiaPrincipal = new JahiaPrincipal(session.getUserID(), session.getRealm(), session.getUserID().startsWith(JahiaLoginModule.SYSTEM), JahiaLoginModule.GUEST.equals(session.getUserID()));
+        this.principalKey = session.getUserID() + "/" + session.getRealm();
+        this.permissionCache = session.getRepository().getPermissionCache();
         try {
             registry = new JahiaPrivilegeRegistry(namespaceRegistry);
             this.modifyAccessControlPrivilege = registry.getPrivilege("jcr:modifyAccessControl", workspaceName);
@@ -167,16 +171,21 @@ public class ExternalAccessControlManager implements AccessControlManager {
             throws PathNotFoundException, RepositoryException {
 
         // check ACLs
-        Set<String> privs = new HashSet<>();
+        Set<String> privs = new TreeSet<>();
         for (Privilege privilege : privileges) {
             privs.add(privilege.getName());
         }
-        String mountPoint = session.getRepository().getStoreProvider().getMountPoint();
-        Session securitySession = (session.getUserID().startsWith(SYSTEM_USER)) ? session
-                : JCRSessionFactory.getInstance().getCurrentSystemSession(session.getWorkspace().getName(), null, null);
-        PathWrapper pathWrapper = new ExternalPathWrapperImpl(StringUtils.equals(absPath, "/") ? mountPoint : mountPoint + absPath, securitySession);
-        boolean isGranted = AccessManagerUtils.isGranted(pathWrapper, privs, securitySession,
-                jahiaPrincipal, workspaceName, false, pathPermissionCache, compiledAcls, registry);
+        String privilegeNames = privs.size() == 1 ? privs.iterator().next() : StringUtils.join(privs, ',');
+        Boolean isGranted = permissionCache.get(workspaceName, principalKey, absPath, privilegeNames);
+        if (isGranted == null) {
+            String mountPoint = session.getRepository().getStoreProvider().getMountPoint();
+            Session securitySession = (session.getUserID().startsWith(SYSTEM_USER)) ? session
+                    : JCRSessionFactory.getInstance().getCurrentSystemSession(session.getWorkspace().getName(), null, null);
+            PathWrapper pathWrapper = new ExternalPathWrapperImpl(StringUtils.equals(absPath, "/") ? mountPoint : mountPoint + absPath, securitySession);
+            isGranted = AccessManagerUtils.isGranted(pathWrapper, privs, securitySession,
+                    jahiaPrincipal, workspaceName, false, pathPermissionCache, compiledAcls, registry);
+            permissionCache.put(workspaceName, principalKey, absPath, privilegeNames, isGranted);
+        }
 
         if (supportPrivileges) {
             // if the node is created in the same session, return true
@@ -269,34 +278,34 @@ public class ExternalAccessControlManager implements AccessControlManager {
     }
 
     public void checkRead(String path) throws RepositoryException {
-        if (!hasPrivileges(path, new Privilege[]{registry.getPrivilege(JCR_READ + "_" + session.getWorkspace().getName(), null)})) {
+        if (!hasPrivileges(path, new Privilege[]{permissionCache.getPrivilege(registry, JCR_READ, workspaceName)})) {
             throw new PathNotFoundException(path);
         }
     }
 
     // JCR_MODIFY_PROPERTIES
     public void checkModify(String path) throws RepositoryException {
-        if (!hasPrivileges(path, new Privilege[]{registry.getPrivilege(JCR_MODIFY_PROPERTIES + "_" + session.getWorkspace().getName(), null)})) {
+        if (!hasPrivileges(path, new Privilege[]{permissionCache.getPrivilege(registry, JCR_MODIFY_PROPERTIES, workspaceName)})) {
             throw new AccessDeniedException(path);
         }
     }
 
     //JCR_ADD_CHILD_NODES
     public void checkAddChildNodes(String path) throws RepositoryException {
-        if (!hasPrivileges(path, new Privilege[]{registry.getPrivilege(JCR_ADD_CHILD_NODES + "_" + session.getWorkspace().getName(), null)})) {
+        if (!hasPrivileges(path, new Privilege[]{permissionCache.getPrivilege(registry, JCR_ADD_CHILD_NODES, workspaceName)})) {
             throw new AccessDeniedException(path);
         }
     }
 
     //JCR_REMOVE_NODE
     public void checkRemoveNode(String path) throws RepositoryException {
-        if (!hasPrivileges(path, new Privilege[]{registry.getPrivilege(JCR_REMOVE_NODE + "_" + session.getWorkspace().getName(), null)})) {
+        if (!hasPrivileges(path, new Privilege[]{permissionCache.getPrivilege(registry, JCR_REMOVE_NODE, workspaceName)})) {
             throw new AccessDeniedException(path);
         }
     }
 
     public boolean canManageNodeTypes(String path) throws RepositoryException {
-        return hasPrivileges(path, new Privilege[]{registry.getPrivilege(JCR_NODE_TYPE_MANAGEMENT + "_" + session.getWorkspace().getName(), null)});
+        return hasPrivileges(path, new Privilege[]{permissionCache.getPrivilege(registry, JCR_NODE_TYPE_MANAGEMENT, workspaceName)});
     }
 
     private List<Privilege> getPrivilegesToFilter(Node node) {
@@ -43,16 +43,27 @@
  */
 package org.jahia.modules.external;
 
-import org.apache.tika.io.IOUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 
 import javax.jcr.Binary;
 import javax.jcr.RepositoryException;
-import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
 * Implementation of the {@link javax.jcr.Binary} for the {@link org.jahia.modules.external.ExternalData}.
+* <p>
+* Every call to {@link #getStream()} returns a new stream. Content in memory is read from its byte array. Other streams
+* are read directly by the first caller, and copied to a spool as they are read, in memory when they are small and in a
+* temporary file otherwise. The rest of the content is only spooled when it is read again, at a position or to get its
+* size.
 * User: loom
 * Date: Aug 12, 2010
 * Time: 3:21:58 PM
@@ -60,36 +71,192 @@ import java.io.InputStream;
 */
 public class ExternalBinaryImpl implements Binary {
 
+    private static final int SPOOL_MEMORY_THRESHOLD = 64 * 1024;
+
     private InputStream inputStream = null;
 
+    private long size = -1;
+
+    private boolean streamReturned = false;
+
+    private DeferredFileOutputStream spool;
+
+    private byte[] bytes;
+
+    private File spoolFile;
+
+    private FileChannel spoolChannel;
+
     public ExternalBinaryImpl(InputStream inputStream) {
-        if (!inputStream.markSupported()) {
-            inputStream = new BufferedInputStream(inputStream);
-        }
+        this(inputStream, -1);
+    }
+
+    /**
+     * @param inputStream the binary content
+     * @param size        the size of the content, or -1 if unknown, in which case it is computed on first call to
+     *                    {@link #getSize()}
+     */
+    public ExternalBinaryImpl(InputStream inputStream, long size) {
         this.inputStream = inputStream;
+        this.size = size;
+    }
+
+    /**
+     * @param bytes the binary content, which is not copied
+     */
+    public ExternalBinaryImpl(byte[] bytes) {
+        this.bytes = bytes;
+        this.size = bytes.length;
+    }
+
+    /**
+     * Reads the rest of the source stream, and keeps the whole content in memory or in a temporary file.
+     */
+    private synchronized void spoolAll() throws IOException {
+        if (bytes != null || spoolFile != null) {
+            return;
+        }
+        if (inputStream == null) {
+            throw new IOException("Binary disposed");
+        }
+        try {
+            if (spool == null && inputStream instanceof ByteArrayInputStream) {
+                bytes = IOUtils.toByteArray(inputStream);
+            } else {
+                if (spool == null) {
+                    spool = new DeferredFileOutputStream(SPOOL_MEMORY_THRESHOLD, "external-binary", null, null);
+                }
+                IOUtils.copyLarge(inputStream, spool);
+                spool.close();
+                if (spool.isInMemory()) {
+                    bytes = spool.getData();
+                } else {
+                    spoolFile = spool.getFile();
+                }
+                spool = null;
+            }
+        } finally {
+            IOUtils.closeQuietly(inputStream);
+            inputStream = null;
+        }
+        size = bytes != null ? bytes.length : spoolFile.length();
     }
 
-    public InputStream getStream() throws RepositoryException {
+    private InputStream openSpooled() throws IOException {
+        return bytes != null ? new ByteArrayInputStream(bytes) : new FileInputStream(spoolFile);
+    }
+
+    public synchronized InputStream getStream() throws RepositoryException {
+        if (bytes == null && spoolFile == null && !streamReturned && inputStream != null && !(inputStream instanceof ByteArrayInputStream)) {
+            streamReturned = true;
+            spool = new DeferredFileOutputStream(SPOOL_MEMORY_THRESHOLD, "external-binary", null, null);
+            return new SpoolingInputStream();
+        }
         try {
-            inputStream.reset();
+            spoolAll();
+            return openSpooled();
         } catch (IOException e) {
             throw new RepositoryException(e);
         }
-        return inputStream;
     }
 
-    public int read(byte[] b, long position) throws IOException, RepositoryException {
-        if (inputStream == null) {
-            throw new IOException("Empty stream");
+    public synchronized int read(byte[] b, long position) throws IOException, RepositoryException {
+        spoolAll();
+        if (bytes != null) {
+            if (position >= bytes.length) {
+                return b.length == 0 ? 0 : -1;
+            }
+            int read = (int) Math.min(b.length, bytes.length - position);
+            System.arraycopy(bytes, (int) position, b, 0, read);
+            return read;
+        }
+        if (spoolChannel == null) {
+            spoolChannel = new RandomAccessFile(spoolFile, "r").getChannel();
         }
-        return inputStream.read(b, (int) position, b.length);
+        ByteBuffer buffer = ByteBuffer.wrap(b);
+        while (buffer.hasRemaining()) {
+            if (spoolChannel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.position() > 0 || b.length == 0 ? buffer.position() : -1;
     }
 
-    public long getSize() throws RepositoryException {
-        return 0;
+    public synchronized long getSize() throws RepositoryException {
+        if (size < 0) {
+            try {
+                spoolAll();
+            } catch (IOException e) {
+                throw new RepositoryException(e);
+            }
+        }
+        return size;
     }
 
-    public void dispose() {
+    public synchronized void dispose() {
         IOUtils.closeQuietly(inputStream);
+        inputStream = null;
+        IOUtils.closeQuietly(spoolChannel);
+        spoolChannel = null;
+        if (spool != null) {
+            IOUtils.closeQuietly(spool);
+            if (!spool.isInMemory()) {
+                spoolFile = spool.getFile();
+            }
+            spool = null;
+        }
+        if (spoolFile != null && !spoolFile.delete()) {
+            spoolFile.deleteOnExit();
+        }
+        spoolFile = null;
+        bytes = null;
+    }
+
+    /**
+     * First stream returned, reading the source and copying it to the spool. When the content has been spooled
+     * meanwhile for another read, the rest is read from the spool.
+     */
+    private class SpoolingInputStream extends InputStream {
+
+        private long position = 0;
+
+        private InputStream spooled;
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int read = read(b, 0, 1);
+            return read > 0 ? b[0] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            synchronized (ExternalBinaryImpl.this) {
+                if (spooled == null && (bytes != null || spoolFile != null)) {
+                    spooled = openSpooled();
+                    IOUtils.skipFully(spooled, position);
+                }
+                if (spooled != null) {
+                    return spooled.read(b, off, len);
+                }
+                if (inputStream == null || spool == null) {
+                    throw new IOException("Binary disposed");
+                }
+                int read = inputStream.read(b, off, len);
+                if (read > 0) {
+                    spool.write(b, off, read);
+                    position += read;
+                } else if (read < 0) {
+                    spoolAll();
+                }
+                return read;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // the source stays open, to be spooled if the content is read again
+            IOUtils.closeQuietly(spooled);
+        }
     }
 }
@@ -48,6 +48,7 @@ import org.apache.jackrabbit.commons.iterator.PropertyIteratorAdapter;
 import org.jahia.api.Constants;
 import org.jahia.exceptions.JahiaInitializationException;
 import org.jahia.exceptions.JahiaRuntimeException;
+import org.jahia.modules.external.events.ExternalEventQueue;
 import org.jahia.services.content.*;
 import org.jahia.services.content.nodetypes.Name;
 import org.jahia.services.content.nodetypes.NodeTypeRegistry;
@@ -59,7 +60,9 @@ import javax.jcr.*;
 import javax.jcr.query.QueryManager;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Implementation of the {@link org.jahia.services.content.JCRStoreProvider} for the {@link org.jahia.modules.external.ExternalData}.
@@ -92,6 +95,16 @@ public class ExternalContentStoreProvider extends JCRStoreProvider implements In
     private boolean lockSupport = false;
     private boolean cacheKeyOnReferenceSupport = false;
     private boolean aclSupport = true;
+    private boolean dataCacheEnabled = false;
+    private long dataCacheMaxSize = 10000;
+    private long dataCacheTimeToLive = 60;
+    private int childrenPageSize = 0;
+    private long permissionCacheMaxSize = 0;
+    private long permissionCacheTimeToLive = 60;
+    private int eventQueueSize = 0;
+    private int eventBatchSize = 100;
+    private long eventBatchDelay = 0;
+    private ExternalEventQueue eventQueue;
 
     public static ExternalSessionImpl getCurrentSession() {
         return currentSession.get();
@@ -157,11 +170,30 @@ public class ExternalContentStoreProvider extends JCRStoreProvider implements In
         if (dataSource instanceof ExternalDataSource.Initializable) {
             ((ExternalDataSource.Initializable) dataSource).start();
         }
-        return super.start(checkAvailability);
+        boolean started = super.start(checkAvailability);
+        // the queue is only started once the provider is, API events are processed synchronously until then
+        if (started && eventQueue == null && eventQueueSize > 0) {
+            eventQueue = new ExternalEventQueue(this, eventQueueSize, eventBatchSize, eventBatchDelay);
+            eventQueue.start();
+        }
+        return started;
     }
 
     @Override
     public void stop() {
+        if (eventQueue != null) {
+            eventQueue.stop();
+            eventQueue = null;
+        }
+        if (getRepository() instanceof ExternalRepositoryImpl) {
+            ExternalRepositoryImpl repository = (ExternalRepositoryImpl) getRepository();
+            if (repository.getDataCache() != null) {
+                logger.info("Stopping provider {}, {}", getKey(), repository.getDataCache());
+            }
+            if (repository.getPermissionCache().isEnabled()) {
+                logger.info("Stopping provider {}, {}", getKey(), repository.getPermissionCache());
+            }
+        }
         super.stop();
         if (dataSource instanceof ExternalDataSource.Initializable) {
             ((ExternalDataSource.Initializable) dataSource).stop();
@@ -283,6 +315,120 @@ public class ExternalContentStoreProvider extends JCRStoreProvider implements In
         this.slowConnection = slowConnection;
     }
 
+    /**
+     * If true, the items read from the data source are kept in a cache shared by all the sessions of this provider.
+     * Should only be enabled for data sources returning the same data whatever the current user is.
+     * by default is false
+     * @return
+     */
+    public boolean isDataCacheEnabled() {
+        return dataCacheEnabled;
+    }
+
+    public void setDataCacheEnabled(boolean dataCacheEnabled) {
+        this.dataCacheEnabled = dataCacheEnabled;
+    }
+
+    public long getDataCacheMaxSize() {
+        return dataCacheMaxSize;
+    }
+
+    public void setDataCacheMaxSize(long dataCacheMaxSize) {
+        this.dataCacheMaxSize = dataCacheMaxSize;
+    }
+
+    /**
+     * @return the time in seconds after which an item of the shared data cache expires
+     */
+    public long getDataCacheTimeToLive() {
+        return dataCacheTimeToLive;
+    }
+
+    public void setDataCacheTimeToLive(long dataCacheTimeToLive) {
+        this.dataCacheTimeToLive = dataCacheTimeToLive;
+    }
+
+    /**
+     * @return the maximum number of access control decisions shared by all sessions, 0 to keep them per session only
+     */
+    public long getPermissionCacheMaxSize() {
+        return permissionCacheMaxSize;
+    }
+
+    /**
+     * Sets the maximum number of access control decisions shared by all sessions. Shared decisions are invalidated when
+     * the external data or the extension nodes of the provider are saved, and by API events. Changes of the ACLs of the
+     * ancestors of the mount point, of roles or of group memberships are not notified to the provider : they are only
+     * taken into account when the decisions expire, after {@link #getPermissionCacheTimeToLive()} seconds.
+     */
+    public void setPermissionCacheMaxSize(long permissionCacheMaxSize) {
+        this.permissionCacheMaxSize = permissionCacheMaxSize;
+    }
+
+    /**
+     * @return the time in seconds after which a shared access control decision expires
+     */
+    public long getPermissionCacheTimeToLive() {
+        return permissionCacheTimeToLive;
+    }
+
+    public void setPermissionCacheTimeToLive(long permissionCacheTimeToLive) {
+        this.permissionCacheTimeToLive = permissionCacheTimeToLive;
+    }
+
+    /**
+     * @return the number of children read at once from data sources that can load children by page, 0 (the default) to
+     * load all the children of a node at once
+     */
+    public int getChildrenPageSize() {
+        return childrenPageSize;
+    }
+
+    public void setChildrenPageSize(int childrenPageSize) {
+        this.childrenPageSize = childrenPageSize;
+    }
+
+    /**
+     * @return the maximum number of API events waiting to be processed asynchronously, 0 to process them synchronously
+     * when they are received by the REST API
+     */
+    public int getEventQueueSize() {
+        return eventQueueSize;
+    }
+
+    public void setEventQueueSize(int eventQueueSize) {
+        this.eventQueueSize = eventQueueSize;
+    }
+
+    /**
+     * @return the maximum number of queued API events processed together
+     */
+    public int getEventBatchSize() {
+        return eventBatchSize;
+    }
+
+    public void setEventBatchSize(int eventBatchSize) {
+        this.eventBatchSize = eventBatchSize;
+    }
+
+    /**
+     * @return the time in milliseconds to wait for more queued API events before processing an incomplete batch
+     */
+    public long getEventBatchDelay() {
+        return eventBatchDelay;
+    }
+
+    public void setEventBatchDelay(long eventBatchDelay) {
+        this.eventBatchDelay = eventBatchDelay;
+    }
+
+    /**
+     * @return the queue of API events processed asynchronously, or <code>null</code> if events are processed synchronously
+     */
+    public ExternalEventQueue getEventQueue() {
+        return eventQueue;
+    }
+
     public List<String> getReservedNodes() {
         return reservedNodes;
     }
@@ -335,6 +481,30 @@ public class ExternalContentStoreProvider extends JCRStoreProvider implements In
         return internalId;
     }
 
+    /**
+     * Get internal UUIDs of the specified nodes, generating the missing ones. Lookups and inserts are done in bulk.
+     *
+     * @param externalIds
+     *            the external IDs to get UUIDs for
+     * @return a map of external ID to internal UUID
+     * @throws RepositoryException
+     *             in case internal identifiers cannot be read from or stored into the database
+     */
+    public Map<String, String> getOrCreateInternalIdentifiers(Collection<String> externalIds) throws RepositoryException {
+        Map<String, String> internalIds = getExternalProviderInitializerService().getInternalIdentifiers(externalIds, getKey());
+        if (internalIds.size() < externalIds.size()) {
+            // not mapped yet -> store mappings
+            List<String> missingIds = new ArrayList<String>(externalIds.size() - internalIds.size());
+            for (String externalId : externalIds) {
+                if (!internalIds.containsKey(externalId)) {
+                    missingIds.add(externalId);
+                }
+            }
+            internalIds.putAll(getExternalProviderInitializerService().mapInternalIdentifiers(missingIds, getKey(), getId()));
+        }
+        return internalIds;
+    }
+
     public PropertyIterator getWeakReferences(JCRNodeWrapper node, String propertyName, Session session) throws RepositoryException {
         if (dataSource instanceof ExternalDataSource.Referenceable && session instanceof ExternalSessionImpl) {
             String identifier = node.getIdentifier();
@@ -0,0 +1,280 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.jcr.Binary;
+
+/**
+ * Provider level cache of {@link ExternalData} snapshots, shared by all the sessions of an {@link ExternalRepositoryImpl}.
+ * Entries are kept per workspace, bounded in size and expired after a configurable time to live.
+ * <p>
+ * As {@link ExternalData} objects are modified in place by the nodes holding them, the cache only stores copies and
+ * returns a new copy on each hit. Items holding binary values or not yet saved are never cached.
+ * <p>
+ * Every invalidation increments a generation counter. Data read from the data source is only stored if no invalidation
+ * happened since the read started, so that a concurrent save cannot be hidden by the stale data read before it.
+ */
+public class ExternalDataCache {
+
+    private final long maxSize;
+    private final long timeToLive;
+    private final ConcurrentMap<String, WorkspaceCache> workspaces = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Initializes an instance of this class.
+     *
+     * @param maxSize    the maximum number of items kept per workspace
+     * @param timeToLive the time in seconds after which a cached item expires
+     */
+    public ExternalDataCache(long maxSize, long timeToLive) {
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Returns a copy of the cached data for the specified path, or <code>null</code> if it is not in the cache.
+     */
+    public ExternalData getByPath(String workspaceName, String path) {
+        ExternalData data = getWorkspaceCache(workspaceName).byPath.getIfPresent(path);
+        return data != null ? copy(data) : null;
+    }
+
+    /**
+     * Returns a copy of the cached data for the specified identifier, or <code>null</code> if it is not in the cache.
+     */
+    public ExternalData getByIdentifier(String workspaceName, String identifier) {
+        ExternalData data = getWorkspaceCache(workspaceName).byIdentifier.getIfPresent(identifier);
+        return data != null ? copy(data) : null;
+    }
+
+    /**
+     * @return the current generation, to be read before reading the data source and passed to
+     * {@link #put(String, ExternalData, long)}
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Stores a snapshot of the specified data, if it can be cached and if the cache has not been invalidated since the
+     * specified generation.
+     *
+     * @param workspaceName the workspace the data has been read for
+     * @param data          the data read from the data source
+     * @param generation    the generation returned by {@link #getGeneration()} before reading the data
+     */
+    public void put(String workspaceName, ExternalData data, long generation) {
+        if (data == null || data.isNew() || (data.getBinaryProperties() != null && !data.getBinaryProperties().isEmpty())) {
+            return;
+        }
+        if (this.generation.get() != generation) {
+            return;
+        }
+        ExternalData snapshot = copy(data);
+        WorkspaceCache cache = getWorkspaceCache(workspaceName);
+        cache.byPath.put(snapshot.getPath(), snapshot);
+        cache.byIdentifier.put(snapshot.getId(), snapshot);
+        if (this.generation.get() != generation) {
+            // an invalidation started while storing, it may have missed the new entries
+            cache.byPath.invalidate(snapshot.getPath());
+            cache.byIdentifier.invalidate(snapshot.getId());
+        }
+    }
+
+    /**
+     * Removes the item at the specified path and all its descendants from the cache, in all workspaces.
+     */
+    public void invalidate(String path) {
+        invalidate(Collections.singleton(path));
+    }
+
+    /**
+     * Removes the items at the specified paths and all their descendants from the cache, in all workspaces. The
+     * cached entries are all checked once, whatever the number of paths.
+     */
+    public void invalidate(Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return;
+        }
+        if (paths.contains(null) || paths.contains("/")) {
+            invalidateAll();
+            return;
+        }
+        generation.incrementAndGet();
+        final Set<String> invalidatedPaths = paths instanceof Set ? (Set<String>) paths : new HashSet<>(paths);
+        for (WorkspaceCache cache : workspaces.values()) {
+            cache.byPath.asMap().keySet().removeIf(p -> isInvalidated(p, invalidatedPaths));
+            cache.byIdentifier.asMap().values().removeIf(d -> isInvalidated(d.getPath(), invalidatedPaths));
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the specified path or one of its ancestors is in the invalidated paths
+     */
+    static boolean isInvalidated(String path, Set<String> invalidatedPaths) {
+        String p = path;
+        while (!invalidatedPaths.contains(p)) {
+            int i = p.lastIndexOf('/');
+            if (i <= 0) {
+                return false;
+            }
+            p = p.substring(0, i);
+        }
+        return true;
+    }
+
+    /**
+     * Removes all the items from the cache.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        for (WorkspaceCache cache : workspaces.values()) {
+            cache.byPath.invalidateAll();
+            cache.byIdentifier.invalidateAll();
+        }
+    }
+
+    /**
+     * @return the number of items currently cached by path, for all workspaces
+     */
+    public long getSize() {
+        long size = 0;
+        for (WorkspaceCache cache : workspaces.values()) {
+            size += cache.byPath.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return hit, miss and eviction statistics, aggregated for all workspaces and both lookup types
+     */
+    public CacheStats getStats() {
+        CacheStats stats = new CacheStats(0, 0, 0, 0, 0, 0);
+        for (WorkspaceCache cache : workspaces.values()) {
+            stats = stats.plus(cache.byPath.stats()).plus(cache.byIdentifier.stats());
+        }
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        CacheStats stats = getStats();
+        return "ExternalDataCache[size=" + getSize() + ", hits=" + stats.hitCount() + ", misses=" + stats.missCount()
+                + ", evictions=" + stats.evictionCount() + "]";
+    }
+
+    private WorkspaceCache getWorkspaceCache(String workspaceName) {
+        WorkspaceCache cache = workspaces.get(workspaceName);
+        if (cache == null) {
+            cache = new WorkspaceCache();
+            WorkspaceCache previous = workspaces.putIfAbsent(workspaceName, cache);
+            if (previous != null) {
+                cache = previous;
+            }
+        }
+        return cache;
+    }
+
+    private Cache<String, ExternalData> buildCache() {
+        return CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(timeToLive, TimeUnit.SECONDS).recordStats().build();
+    }
+
+    private static ExternalData copy(ExternalData data) {
+        ExternalData copy = new ExternalData(data.getId(), data.getPath(), data.getType(), copyValues(data.getProperties()));
+        if (data.getMixin() != null) {
+            copy.setMixin(new ArrayList<>(data.getMixin()));
+        }
+        if (data.getI18nProperties() != null) {
+            Map<String, Map<String, String[]>> i18nProperties = new HashMap<>();
+            for (Map.Entry<String, Map<String, String[]>> entry : data.getI18nProperties().entrySet()) {
+                i18nProperties.put(entry.getKey(), copyValues(entry.getValue()));
+            }
+            copy.setI18nProperties(i18nProperties);
+        }
+        if (data.getBinaryProperties() != null) {
+            copy.setBinaryProperties(new HashMap<String, Binary[]>());
+        }
+        if (data.getLazyProperties() != null) {
+            copy.setLazyProperties(new HashSet<>(data.getLazyProperties()));
+        }
+        if (data.getLazyBinaryProperties() != null) {
+            copy.setLazyBinaryProperties(new HashSet<>(data.getLazyBinaryProperties()));
+        }
+        if (data.getLazyI18nProperties() != null) {
+            Map<String, Set<String>> lazyI18nProperties = new HashMap<>();
+            for (Map.Entry<String, Set<String>> entry : data.getLazyI18nProperties().entrySet()) {
+                lazyI18nProperties.put(entry.getKey(), new HashSet<>(entry.getValue()));
+            }
+            copy.setLazyI18nProperties(lazyI18nProperties);
+        }
+        copy.setExternalDataAcl(data.getExternalDataAcl());
+        return copy;
+    }
+
+    /**
+     * Copies the values as well as the map, as the arrays of an item read from the cache may be modified in place.
+     */
+    private static Map<String, String[]> copyValues(Map<String, String[]> values) {
+        Map<String, String[]> copy = new HashMap<>(values.size() * 4 / 3 + 1);
+        for (Map.Entry<String, String[]> entry : values.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue() != null ? entry.getValue().clone() : null);
+        }
+        return copy;
+    }
+
+    private class WorkspaceCache {
+        private final Cache<String, ExternalData> byPath = buildCache();
+        private final Cache<String, ExternalData> byIdentifier = buildCache();
+    }
+}
@@ -43,7 +43,10 @@
  */
 package org.jahia.modules.external;
 
+import java.io.Closeable;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.jcr.Binary;
 import javax.jcr.ItemNotFoundException;
@@ -109,6 +112,22 @@ public interface ExternalDataSource {
         List<String> search(ExternalQuery query) throws RepositoryException;
     }
 
+    /**
+     * If implemented, search results are read lazily from an iterator instead of being returned as a whole list. The
+     * data source can then fetch them page by page, as the results are consumed.
+     */
+    public interface SearchableIterator extends Searchable {
+        /**
+         * Execute a search query
+         *
+         * @param query The JCR Query, can be parsed with
+         * @return Iterator over the node paths
+         * @throws RepositoryException
+         * @see org.jahia.modules.external.query.QueryHelper
+         */
+        Iterator<String> searchIterator(ExternalQuery query) throws RepositoryException;
+    }
+
     /**
      * If implemented, this interface allow and defines count feature support.
      */
@@ -231,6 +250,75 @@ public interface ExternalDataSource {
         List<ExternalData> getChildrenNodes(String path) throws RepositoryException;
     }
 
+    /**
+     * If implemented, allows to load the lazy properties of many nodes at once, when the nodes are iterated together.
+     * Lazy i18n and binary properties are not loaded in batch, they are still read one by one with
+     * {@link LazyProperty#getI18nPropertyValues(String, String, String)} and
+     * {@link LazyProperty#getBinaryPropertyValues(String, String)}.
+     */
+    interface CanLoadPropertiesInBatch extends LazyProperty {
+        /**
+         * Get values for lazy properties of several nodes
+         *
+         * @param paths         Paths of the nodes
+         * @param propertyNames Names of the properties to get
+         * @return the values by property name, for each path. Nodes or properties missing from the result are read
+         * with {@link LazyProperty#getPropertyValues(String, String)} when they are accessed
+         * @throws RepositoryException
+         */
+        Map<String, Map<String, String[]>> getPropertiesValues(List<String> paths, Set<String> propertyNames) throws RepositoryException;
+    }
+
+    /**
+     * If implemented, allows to read the children of large nodes page by page, instead of loading all of them at once.
+     * Paging is only used when the provider is configured with a children page size. The first page is always read :
+     * when it is not full, it is used as the whole list of children.
+     */
+    interface CanLoadChildrenByPage {
+        /**
+         * Opens a cursor reading the children of the node located at the specified path, in the same order as
+         * {@link ExternalDataSource#getChildren(String)}. The cursor is closed once its last page has been read, or when
+         * the session reading it is logged out.
+         *
+         * @param path the path from where to get children
+         * @return a cursor over the children
+         * @throws RepositoryException
+         */
+        ChildrenCursor openChildrenCursor(String path) throws RepositoryException;
+
+        /**
+         * Counts the children of the node located at the specified path, which are the children returned by
+         * {@link #openChildrenCursor(String)}. Only called when the size of a children iterator is requested.
+         *
+         * @param path the path from where to count children
+         * @return the number of children, or -1 if it cannot be computed without listing all of them
+         * @throws RepositoryException
+         */
+        long getChildrenCount(String path) throws RepositoryException;
+    }
+
+    /**
+     * Cursor over the children of a node, see {@link CanLoadChildrenByPage}
+     */
+    interface ChildrenCursor extends Closeable {
+        /**
+         * Reads the next children, as ExternalData elements.
+         *
+         * @param limit the maximum number of children to return
+         * @return the next children, less than limit children if this is the last page. As with
+         * {@link CanLoadChildrenInBatch#getChildrenNodes(String)}, descendants of these children can be returned too,
+         * they are not counted in the page
+         * @throws RepositoryException
+         */
+        List<ExternalData> nextPage(int limit) throws RepositoryException;
+
+        /**
+         * Releases the resources held by the cursor
+         */
+        @Override
+        void close();
+    }
+
     /**
      * If implemented, allows to check availability of the provider when the "/" node is read
      */
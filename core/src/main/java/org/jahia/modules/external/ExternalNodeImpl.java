@@ -43,11 +43,13 @@
  */
 package org.jahia.modules.external;
 
+import com.google.common.collect.Iterators;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.jackrabbit.util.ChildrenCollectorFilter;
 import org.apache.jackrabbit.value.BinaryImpl;
 import org.jahia.api.Constants;
+import org.jahia.exceptions.JahiaRuntimeException;
 import org.jahia.modules.external.acl.ExternalDataAce;
 import org.jahia.modules.external.acl.ExternalDataAcl;
 import org.jahia.services.content.nodetypes.*;
@@ -65,6 +67,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
 
 /**
  * Implementation of the {@link javax.jcr.Node} for the {@link org.jahia.modules.external.ExternalData}.
@@ -77,11 +81,13 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
 
     private static final Logger logger = LoggerFactory.getLogger(ExternalNodeImpl.class);
     private static final String J_TRANSLATION = "j:translation_";
+    private static final int NODES_BATCH_SIZE = 100;
 
     private ExternalData data;
     private List<String> externalChildren;
     private Map<String, ExternalPropertyImpl> properties = null;
     private String uuid;
+    private LazyPropertiesPrefetch lazyPropertiesPrefetch;
 
     public ExternalNodeImpl(ExternalData data, ExternalSessionImpl session) throws RepositoryException {
 
@@ -207,6 +213,29 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
         return data;
     }
 
+    void setLazyPropertiesPrefetch(LazyPropertiesPrefetch lazyPropertiesPrefetch) {
+        this.lazyPropertiesPrefetch = lazyPropertiesPrefetch;
+    }
+
+    /**
+     * Loads at once the specified lazy properties of this node. The nodes read together with it only load the
+     * properties they access.
+     */
+    void loadLazyProperties(Set<String> propertyNames) {
+        if (data.getLazyProperties() == null || properties.containsKey(Constants.JCR_LANGUAGE) || !session.canPrefetchLazyProperties()) {
+            return;
+        }
+        Set<String> lazyPropertyNames = new HashSet<String>(propertyNames);
+        lazyPropertyNames.retainAll(data.getLazyProperties());
+        if (lazyPropertyNames.isEmpty()) {
+            return;
+        }
+        if (lazyPropertiesPrefetch == null) {
+            new LazyPropertiesPrefetch(session).add(this);
+        }
+        lazyPropertiesPrefetch.load(data, lazyPropertyNames);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -250,21 +279,7 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
                     final ExternalDataSource dataSource = session.getRepository().getDataSource();
                     if (dataSource instanceof ExternalDataSource.CanLoadChildrenInBatch) {
                         ExternalDataSource.CanLoadChildrenInBatch childrenLoader = (ExternalDataSource.CanLoadChildrenInBatch) dataSource;
-                        final List<ExternalData> childrenNodes = childrenLoader.getChildrenNodes(getPath());
-                        if (externalChildren == null) {
-                            externalChildren = new ArrayList<String>(childrenNodes.size());
-                        }
-                        for (ExternalData child : childrenNodes) {
-                            String parentPath = StringUtils.substringBeforeLast(child.getPath(), "/");
-                            if (parentPath.equals("")) {
-                                parentPath = "/";
-                            }
-                            if (parentPath.equals(getPath())) {
-                                externalChildren.add(child.getName());
-                            }
-                            final ExternalNodeImpl node = new ExternalNodeImpl(child, session);
-                            session.registerNode(node);
-                        }
+                        externalChildren = registerChildren(childrenLoader.getChildrenNodes(getPath()));
                     } else {
                         externalChildren = new ArrayList<String>(dataSource.getChildren(getPath()));
                     }
@@ -276,6 +291,44 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
         return externalChildren;
     }
 
+    /**
+     * Registers the loaded children data in the session, and returns the names of the direct children of this node
+     */
+    private List<String> registerChildren(List<ExternalData> childrenNodes) throws RepositoryException {
+        List<String> names = new ArrayList<String>(childrenNodes.size());
+        for (ExternalData child : childrenNodes) {
+            String parentPath = StringUtils.substringBeforeLast(child.getPath(), "/");
+            if (parentPath.equals("")) {
+                parentPath = "/";
+            }
+            if (parentPath.equals(getPath())) {
+                names.add(child.getName());
+            }
+        }
+        session.registerNodes(childrenNodes);
+        return names;
+    }
+
+    /**
+     * Returns an iterator reading the external children page by page, if paging is enabled on the provider, the data
+     * source supports it and the children are not already loaded in this session. The first page is read immediately :
+     * if it is not full, it holds all the children, which are then kept as the external children and <code>null</code>
+     * is returned.
+     */
+    private PagedChildrenIterator getPagedExternalChildren() throws RepositoryException {
+        final int pageSize = getStoreProvider().getChildrenPageSize();
+        if (externalChildren != null || isNew || pageSize <= 0 || !(session.getRepository().getDataSource() instanceof ExternalDataSource.CanLoadChildrenByPage)) {
+            return null;
+        }
+        PagedChildrenIterator pagedChildren = new PagedChildrenIterator(pageSize);
+        List<ExternalData> firstPage = pagedChildren.fetchPage();
+        if (pagedChildren.lastPage) {
+            externalChildren = registerChildren(firstPage);
+            return null;
+        }
+        return pagedChildren;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -719,7 +772,8 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
             return new ExternalNodeIterator(filteredList);
         }
 
-        final List<String> externalChildren = getExternalChildren();
+        final PagedChildrenIterator pagedChildren = namePattern.equals("j:translation*") ? null : getPagedExternalChildren();
+        final List<String> externalChildren = pagedChildren != null ? Collections.<String>emptyList() : getExternalChildren();
         if (!externalChildren.isEmpty()) {
             if (!namePattern.equals("j:translation*")) {
                 if (!matchAll) {
@@ -756,10 +810,18 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
         }
 
         Node n = getExtensionNode(false);
-        if (n != null) {
-            return new ExternalNodeIterator(filteredList, matchAll ? n.getNodes() : n.getNodes(namePattern));
+        NodeIterator extensionNodeIterator = n != null ? (matchAll ? n.getNodes() : n.getNodes(namePattern)) : null;
+        if (pagedChildren != null) {
+            Iterator<ExternalData> children = matchAll ? pagedChildren : Iterators.filter(pagedChildren, child -> ChildrenCollectorFilter.matches(child.getName(), namePattern));
+            final int translationsCount = filteredList.size();
+            LongSupplier size = () -> {
+                long count = matchAll ? pagedChildren.getCount() : -1;
+                return count >= 0 ? count + translationsCount : -1;
+            };
+            return new ExternalNodeIterator(pagedChildren, Iterators.<Object>concat(children, filteredList.iterator()), size, extensionNodeIterator,
+                    isExternalChild(filteredList));
         }
-        return new ExternalNodeIterator(filteredList);
+        return new ExternalNodeIterator(filteredList, extensionNodeIterator);
     }
 
     /**
@@ -787,9 +849,12 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
             return new ExternalNodeIterator(filteredList);
         }
 
-        for (String path : getExternalChildren()) {
-            if (ChildrenCollectorFilter.matches(path, nameGlobs)) {
-                filteredList.add(path);
+        final PagedChildrenIterator pagedChildren = getPagedExternalChildren();
+        if (pagedChildren == null) {
+            for (String path : getExternalChildren()) {
+                if (ChildrenCollectorFilter.matches(path, nameGlobs)) {
+                    filteredList.add(path);
+                }
             }
         }
         Set<String> languages = new HashSet<String>();
@@ -813,10 +878,33 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
         }
 
         Node n = getExtensionNode(false);
-        if (n != null) {
-            return new ExternalNodeIterator(filteredList, n.getNodes(nameGlobs));
+        NodeIterator extensionNodeIterator = n != null ? n.getNodes(nameGlobs) : null;
+        if (pagedChildren != null) {
+            Iterator<ExternalData> children = Iterators.filter(pagedChildren, child -> ChildrenCollectorFilter.matches(child.getName(), nameGlobs));
+            return new ExternalNodeIterator(pagedChildren, Iterators.<Object>concat(children, filteredList.iterator()), () -> -1, extensionNodeIterator,
+                    isExternalChild(filteredList));
         }
-        return new ExternalNodeIterator(filteredList);
+        return new ExternalNodeIterator(filteredList, extensionNodeIterator);
+    }
+
+    /**
+     * Tells whether an extension node has the name of an external child read by page, or of another child in the
+     * specified list, without keeping the names of the pages already read
+     */
+    private Predicate<String> isExternalChild(List<String> otherChildren) {
+        final ExternalDataSource dataSource = session.getRepository().getDataSource();
+        final String prefix = getPath().endsWith("/") ? getPath() : getPath() + "/";
+        return name -> {
+            if (otherChildren.contains(name)) {
+                return true;
+            }
+            ExternalContentStoreProvider.setCurrentSession(session);
+            try {
+                return dataSource.itemExists(prefix + name);
+            } finally {
+                ExternalContentStoreProvider.removeCurrentSession();
+            }
+        };
     }
 
     /**
@@ -834,6 +922,8 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
                 String[] values;
                 if (properties.containsKey(Constants.JCR_LANGUAGE)) {
                     values = session.getI18nPropertyValues(data, properties.get(Constants.JCR_LANGUAGE).getString(), s);
+                } else if (lazyPropertiesPrefetch != null) {
+                    values = lazyPropertiesPrefetch.getPropertyValues(data, s);
                 } else {
                     values = session.getPropertyValues(data, s);
                 }
@@ -1005,7 +1095,12 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
      */
     @Override
     public boolean hasNodes() throws RepositoryException {
-        return getNodes().hasNext();
+        NodeIterator nodes = getNodes();
+        boolean hasNodes = nodes.hasNext();
+        if (nodes instanceof ExternalNodeIterator) {
+            ((ExternalNodeIterator) nodes).close();
+        }
+        return hasNodes;
     }
 
     /**
@@ -1728,6 +1823,7 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
                 return;
             }
             if (lazyPropertiesIterator == null && lazyProperties != null) {
+                node.loadLazyProperties(lazyProperties);
                 lazyPropertiesIterator = lazyProperties.iterator();
             }
             if (lazyPropertiesIterator != null && lazyPropertiesIterator.hasNext()) {
@@ -1785,14 +1881,120 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
         }
     }
 
+    /**
+     * Iterator over the data of the external children, read from a cursor of the data source one page at a time. Only
+     * the current page is kept in memory : its nodes are not registered in the session.
+     */
+    private class PagedChildrenIterator implements Iterator<ExternalData> {
+
+        private final int pageSize;
+        private ExternalDataSource.ChildrenCursor cursor;
+        private long count = -2;
+        private long offset = 0;
+        private boolean lastPage = false;
+        private Iterator<ExternalData> page = Collections.emptyIterator();
+
+        PagedChildrenIterator(int pageSize) {
+            this.pageSize = pageSize;
+        }
+
+        /**
+         * @return the number of children reported by the data source, only asked the first time, or -1 if unknown
+         */
+        long getCount() {
+            if (count == -2) {
+                ExternalContentStoreProvider.setCurrentSession(session);
+                try {
+                    count = ((ExternalDataSource.CanLoadChildrenByPage) session.getRepository().getDataSource()).getChildrenCount(getPath());
+                } catch (RepositoryException e) {
+                    logger.warn("Cannot count children of " + getPath(), e);
+                    count = -1;
+                } finally {
+                    ExternalContentStoreProvider.removeCurrentSession();
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!page.hasNext() && !lastPage) {
+                try {
+                    fetchPage();
+                } catch (RepositoryException e) {
+                    close();
+                    throw new JahiaRuntimeException("Cannot read children of " + getPath() + " at offset " + offset, e);
+                }
+            }
+            return page.hasNext();
+        }
+
+        /**
+         * Reads the next page, and returns all the data it holds, including the descendants of the children
+         */
+        private List<ExternalData> fetchPage() throws RepositoryException {
+            ExternalContentStoreProvider.setCurrentSession(session);
+            try {
+                if (cursor == null) {
+                    cursor = session.openChildrenCursor(getPath());
+                }
+                List<ExternalData> pageData = session.readChildrenPage(cursor, pageSize);
+                List<ExternalData> children = new ArrayList<ExternalData>(Math.min(pageData.size(), pageSize));
+                String parentPath = getPath().equals("/") ? "" : getPath();
+                for (ExternalData data : pageData) {
+                    if (StringUtils.substringBeforeLast(data.getPath(), "/").equals(parentPath)) {
+                        children.add(data);
+                    }
+                }
+                offset += children.size();
+                lastPage = children.size() < pageSize;
+                page = children.iterator();
+                if (lastPage) {
+                    close();
+                }
+                return pageData;
+            } finally {
+                ExternalContentStoreProvider.removeCurrentSession();
+            }
+        }
+
+        void close() {
+            lastPage = true;
+            if (cursor != null) {
+                session.closeChildrenCursor(cursor);
+            }
+        }
+
+        @Override
+        public ExternalData next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static LongSupplier constantSize(final long size) {
+        return () -> size;
+    }
+
     /**
      * Node iterator implementation
      */
     private class ExternalNodeIterator implements NodeIterator {
 
         private int pos = 0;
-        private Iterator<String> it;
-        private final List<String> list;
+        private final Iterator<?> it;
+        private final LongSupplier size;
+        private final Predicate<String> isExternalChild;
+        private final LinkedList<Node> batch = new LinkedList<Node>();
+        private PagedChildrenIterator pagedChildren;
+        private boolean started = false;
         private NodeIterator extensionNodeIterator;
         private Node nextNode;
 
@@ -1801,32 +2003,46 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
         }
 
         public ExternalNodeIterator(List<String> list, NodeIterator extensionNodeIterator) {
+            this(list.iterator(), constantSize(list.size()), extensionNodeIterator,
+                    extensionNodeIterator != null ? new HashSet<String>(list)::contains : name -> false);
+        }
+
+        /**
+         * @param it                    the names of the child nodes, or the data of the children read by page, may be
+         *                              read lazily
+         * @param size                  the number of children, or -1 if unknown, only asked when the size is requested
+         * @param extensionNodeIterator the children of the extension node, if any
+         * @param isExternalChild       tells whether an extension node has the name of an external child, which is
+         *                              returned instead
+         */
+        public ExternalNodeIterator(Iterator<?> it, LongSupplier size, NodeIterator extensionNodeIterator, Predicate<String> isExternalChild) {
             this.extensionNodeIterator = extensionNodeIterator;
-            this.list = list;
-            this.it = list.iterator();
+            this.it = it;
+            this.size = size;
+            this.isExternalChild = isExternalChild;
             fetchNext();
         }
 
+        private ExternalNodeIterator(PagedChildrenIterator pagedChildren, Iterator<?> it, LongSupplier size, NodeIterator extensionNodeIterator,
+                                     Predicate<String> isExternalChild) {
+            this(it, size, extensionNodeIterator, isExternalChild);
+            this.pagedChildren = pagedChildren;
+        }
+
         private Node fetchNext() {
             nextNode = null;
-            if (it.hasNext()) {
-                Node next;
-                do {
-                    try {
-                        next = getNode(it.next());
-                    } catch (RepositoryException e) {
-                        next = null;
-                        logger.debug(e.getMessage(), e);
-                    }
-                } while (next == null && it.hasNext());
-                nextNode = next;
+            if (batch.isEmpty() && it.hasNext()) {
+                fetchBatch();
+            }
+            if (!batch.isEmpty()) {
+                nextNode = batch.removeFirst();
                 return nextNode;
             }
             if (extensionNodeIterator != null) {
                 while (extensionNodeIterator.hasNext()) {
                     Node n = extensionNodeIterator.nextNode();
                     try {
-                        if (!list.contains(n.getName())) {
+                        if (!isExternalChild.test(n.getName())) {
                             String path = getPath();
                             if (!path.endsWith("/")) {
                                 path += "/";
@@ -1847,6 +2063,36 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
             return null;
         }
 
+        /**
+         * Resolves the next nodes, the first one alone and then by batches when the data source can load their lazy
+         * properties together, one at a time otherwise
+         */
+        private void fetchBatch() {
+            int batchSize = started && session.canPrefetchLazyProperties() ? NODES_BATCH_SIZE : 1;
+            started = true;
+            while (batch.size() < batchSize && it.hasNext()) {
+                Object child = it.next();
+                try {
+                    Node next = child instanceof ExternalData ? session.getNode((ExternalData) child) : getNode((String) child);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                } catch (RepositoryException e) {
+                    logger.debug(e.getMessage(), e);
+                }
+            }
+            session.prefetchLazyPropertiesTogether(batch);
+        }
+
+        /**
+         * Closes the cursor of the children read by page, when the iteration is stopped before the last page
+         */
+        void close() {
+            if (pagedChildren != null) {
+                pagedChildren.close();
+            }
+        }
+
         @Override
         public Node nextNode() {
             if (nextNode == null) {
@@ -1867,7 +2113,11 @@ public class ExternalNodeImpl extends ExternalItemImpl implements Node {
 
         @Override
         public long getSize() {
-            return list.size() + (extensionNodeIterator != null ? extensionNodeIterator.getSize() : 0);
+            long namesCount = size.getAsLong();
+            if (namesCount < 0) {
+                return -1;
+            }
+            return namesCount + (extensionNodeIterator != null ? extensionNodeIterator.getSize() : 0);
         }
 
         @Override
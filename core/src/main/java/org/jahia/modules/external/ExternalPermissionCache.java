@@ -0,0 +1,205 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.apache.jackrabbit.core.security.JahiaPrivilegeRegistry;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.security.Privilege;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provider level cache of access control decisions, shared by the {@link ExternalAccessControlManager} of all the
+ * sessions of an {@link ExternalRepositoryImpl}.
+ * <p>
+ * Decisions are keyed by workspace, principal, path and privileges, and privileges are resolved once per workspace.
+ * Compiled ACLs are not shared, as they are computed for the principal of a session. Entries are bounded in size and
+ * expired after a configurable time to live, so that ACL changes which are not notified to the provider are eventually
+ * taken into account. With a maximum size of 0, only the privileges are cached.
+ */
+public class ExternalPermissionCache {
+
+    private final Cache<Key, Boolean> decisions;
+    private final ConcurrentMap<String, Privilege> privileges = new ConcurrentHashMap<>();
+
+    /**
+     * Initializes an instance of this class.
+     *
+     * @param maxSize    the maximum number of decisions kept, 0 to disable the caching of decisions
+     * @param timeToLive the time in seconds after which a decision expires
+     */
+    public ExternalPermissionCache(long maxSize, long timeToLive) {
+        if (maxSize > 0) {
+            this.decisions = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(timeToLive, TimeUnit.SECONDS).recordStats().build();
+        } else {
+            this.decisions = null;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if decisions are cached
+     */
+    public boolean isEnabled() {
+        return decisions != null;
+    }
+
+    /**
+     * Returns the cached decision, or <code>null</code> if it is not in the cache.
+     */
+    public Boolean get(String workspaceName, String principal, String path, String privilegeNames) {
+        return decisions != null ? decisions.getIfPresent(new Key(workspaceName, principal, path, privilegeNames)) : null;
+    }
+
+    public void put(String workspaceName, String principal, String path, String privilegeNames, boolean granted) {
+        if (decisions != null) {
+            decisions.put(new Key(workspaceName, principal, path, privilegeNames), granted);
+        }
+    }
+
+    /**
+     * Returns the privilege with the specified name in the specified workspace, resolving it only the first time.
+     */
+    public Privilege getPrivilege(JahiaPrivilegeRegistry registry, String privilegeName, String workspaceName) throws RepositoryException {
+        String key = privilegeName + "_" + workspaceName;
+        Privilege privilege = privileges.get(key);
+        if (privilege == null) {
+            privilege = registry.getPrivilege(key, null);
+            privileges.putIfAbsent(key, privilege);
+        }
+        return privilege;
+    }
+
+    /**
+     * Removes the decisions for the item at the specified path and all its descendants, as they inherit its ACL.
+     */
+    public void invalidate(String path) {
+        invalidate(Collections.singleton(path));
+    }
+
+    /**
+     * Removes the decisions for the items at the specified paths and all their descendants, in a single pass over the
+     * cache.
+     */
+    public void invalidate(Collection<String> paths) {
+        if (decisions == null || paths.isEmpty()) {
+            return;
+        }
+        if (paths.contains(null) || paths.contains("/")) {
+            invalidateAll();
+            return;
+        }
+        final Set<String> invalidatedPaths = paths instanceof Set ? (Set<String>) paths : new HashSet<>(paths);
+        decisions.asMap().keySet().removeIf(k -> ExternalDataCache.isInvalidated(k.path, invalidatedPaths));
+    }
+
+    /**
+     * Removes all the decisions from the cache.
+     */
+    public void invalidateAll() {
+        if (decisions != null) {
+            decisions.invalidateAll();
+        }
+    }
+
+    /**
+     * @return the number of decisions currently cached
+     */
+    public long getSize() {
+        return decisions != null ? decisions.size() : 0;
+    }
+
+    /**
+     * @return hit, miss and eviction statistics of the decisions
+     */
+    public CacheStats getStats() {
+        return decisions != null ? decisions.stats() : new CacheStats(0, 0, 0, 0, 0, 0);
+    }
+
+    @Override
+    public String toString() {
+        CacheStats stats = getStats();
+        return "ExternalPermissionCache[size=" + getSize() + ", hits=" + stats.hitCount() + ", misses=" + stats.missCount()
+                + ", evictions=" + stats.evictionCount() + "]";
+    }
+
+    private static final class Key {
+        private final String workspaceName;
+        private final String principal;
+        private final String path;
+        private final String privilegeNames;
+        private final int hash;
+
+        Key(String workspaceName, String principal, String path, String privilegeNames) {
+            this.workspaceName = workspaceName;
+            this.principal = principal;
+            this.path = path;
+            this.privilegeNames = privilegeNames;
+            this.hash = Arrays.hashCode(new Object[]{workspaceName, principal, path, privilegeNames});
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return path.equals(key.path) && principal.equals(key.principal) && privilegeNames.equals(key.privilegeNames)
+                    && Objects.equals(workspaceName, key.workspaceName);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
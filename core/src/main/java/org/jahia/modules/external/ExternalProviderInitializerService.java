@@ -45,7 +45,9 @@ package org.jahia.modules.external;
 
 import org.jahia.services.content.JCRStoreProvider;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import javax.jcr.RepositoryException;
 
@@ -96,6 +98,20 @@ public interface ExternalProviderInitializerService {
      */
     String getInternalIdentifier(String externalId, String providerKey) throws RepositoryException;
 
+    /**
+     * Reads internal UUIDs of the specified nodes via mapping table, using external IDs and provider key. All the IDs are resolved in a
+     * single database session, using chunked queries.
+     *
+     * @param externalIds
+     *            the external IDs to retrieve UUIDs for
+     * @param providerKey
+     *            the underlying provider key
+     * @return a map of internal UUIDs by external ID; external IDs that are not mapped yet are not part of the map
+     * @throws RepositoryException
+     *             in case internal identifiers cannot be retrieved from the database or any other issue
+     */
+    Map<String, String> getInternalIdentifiers(Collection<String> externalIds, String providerKey) throws RepositoryException;
+
     /**
      * Returns internal provider ID for the specified provider. If the provider is not registered yet, creates an ID for it and stores an
      * entry in the database.
@@ -123,6 +139,23 @@ public interface ExternalProviderInitializerService {
      */
     String mapInternalIdentifier(String externalId, String providerKey, String providerId) throws RepositoryException;
 
+    /**
+     * Generates the internal UUIDs for the specified nodes in the mapping table, using external IDs and provider key. The mappings are
+     * stored by batches, each one in its own transaction. If some of the nodes of a batch have been mapped concurrently, their existing
+     * UUIDs are returned and only the other ones are stored.
+     *
+     * @param externalIds
+     *            the external IDs to generate UUIDs for
+     * @param providerKey
+     *            the underlying provider key
+     * @param providerId
+     *            the ID provider is using as a prefix for the UUIDs of nodes
+     * @return a map of generated internal UUIDs by external ID
+     * @throws RepositoryException
+     *             in case internal identifiers cannot be stored into the database
+     */
+    Map<String, String> mapInternalIdentifiers(Collection<String> externalIds, String providerKey, String providerId) throws RepositoryException;
+
     /**
      * Removes the provider entry from the DB table and also all the corresponding ID mappings.
      *
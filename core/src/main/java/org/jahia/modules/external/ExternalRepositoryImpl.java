@@ -123,12 +123,18 @@ public class ExternalRepositoryImpl implements Repository {
 
     private Map<String, Object> repositoryDescriptors = new HashMap<String, Object>();
     private ExternalContentStoreProvider storeProvider;
+    private ExternalDataCache dataCache;
+    private ExternalPermissionCache permissionCache;
 
     public ExternalRepositoryImpl(ExternalContentStoreProvider storeProvider, ExternalDataSource dataSource, NamespaceRegistry nsRegistry) {
         this.storeProvider = storeProvider;
         this.dataSource = dataSource;
         this.namespaceRegistry = nsRegistry;
         this.namePathResolver = new DefaultNamePathResolver(nsRegistry);
+        if (storeProvider.isDataCacheEnabled()) {
+            this.dataCache = new ExternalDataCache(storeProvider.getDataCacheMaxSize(), storeProvider.getDataCacheTimeToLive());
+        }
+        this.permissionCache = new ExternalPermissionCache(storeProvider.getPermissionCacheMaxSize(), storeProvider.getPermissionCacheTimeToLive());
         initDescriptors();
     }
 
@@ -136,6 +142,20 @@ public class ExternalRepositoryImpl implements Repository {
         return dataSource;
     }
 
+    /**
+     * @return the data cache shared by all the sessions of this repository, or <code>null</code> if it is not enabled
+     */
+    public ExternalDataCache getDataCache() {
+        return dataCache;
+    }
+
+    /**
+     * @return the access control cache shared by all the sessions of this repository
+     */
+    public ExternalPermissionCache getPermissionCache() {
+        return permissionCache;
+    }
+
     public String getDescriptor(String s) {
         Object descriptorObject = repositoryDescriptors.get(s);
         if (descriptorObject instanceof Value) {
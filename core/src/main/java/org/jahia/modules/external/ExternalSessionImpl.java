@@ -77,13 +77,8 @@ public class ExternalSessionImpl implements Session {
     static final String TRANSLATION_NODE_NAME_BASE = "j:translation_";
     static final String ACE_PREFIX = "j:ace:";
 
-    private static final boolean DEBUG = false;
     private static final Logger logger = LoggerFactory.getLogger(ExternalSessionImpl.class);
 
-    private static volatile int fromCacheCount = 0;
-    private static volatile int totalCacheChecks = 0;
-    private static volatile int totalSavedCalls = 0;
-
     private ExternalRepositoryImpl repository;
     private ExternalWorkspaceImpl workspace;
     private Credentials credentials;
@@ -94,6 +89,7 @@ public class ExternalSessionImpl implements Session {
     private Map<String, ExternalData> deletedData = new LinkedHashMap<String, ExternalData>();
     private Map<String, List<String>> orderedData = new LinkedHashMap<String, List<String>>();
     private Set<Binary> tempBinaries = new HashSet<Binary>();
+    private Set<ExternalDataSource.ChildrenCursor> childrenCursors = new HashSet<ExternalDataSource.ChildrenCursor>();
     private Session extensionSession;
     private List<String> extensionAllowedTypes;
     private List<String> extensionForbiddenMixins;
@@ -143,33 +139,54 @@ public class ExternalSessionImpl implements Session {
     }
 
     private ExternalNodeImpl getFromCacheByPath(String path) {
-        return getFromCache(path, nodesByPath);
+        return nodesByPath.get(path);
     }
 
     private ExternalNodeImpl getFromCacheById(String id) {
-        return getFromCache(id, nodesByIdentifier);
+        return nodesByIdentifier.get(id);
     }
 
-    private static ExternalNodeImpl getFromCache(String key, Map<String, ExternalNodeImpl> cache) {
-
-        totalCacheChecks++;
-
-        if (cache.isEmpty()) {
-            totalSavedCalls += fromCacheCount;
-            if (DEBUG) {
-                logger.debug("Saved " + fromCacheCount + " calls out of " + totalCacheChecks + " since last cache reset. Total saved calls: " + totalSavedCalls);
-            }
-            fromCacheCount = 0;
-            totalCacheChecks = 0;
-            return null;
+    /**
+     * Reads an item from the data source, going through the repository data cache when it is enabled.
+     */
+    private ExternalData getItemByPath(String path) throws PathNotFoundException {
+        final ExternalDataCache dataCache = repository.getDataCache();
+        if (dataCache == null) {
+            return repository.getDataSource().getItemByPath(path);
+        }
+        ExternalData data = dataCache.getByPath(workspace.getName(), path);
+        if (data == null) {
+            long generation = dataCache.getGeneration();
+            data = repository.getDataSource().getItemByPath(path);
+            dataCache.put(workspace.getName(), data, generation);
         }
+        return data;
+    }
 
-        final ExternalNodeImpl node = cache.get(key);
-        if (node != null) {
-            fromCacheCount++;
+    /**
+     * Reads an item from the data source, going through the repository data cache when it is enabled.
+     */
+    private ExternalData getItemByIdentifier(String identifier) throws ItemNotFoundException {
+        final ExternalDataCache dataCache = repository.getDataCache();
+        if (dataCache == null) {
+            return repository.getDataSource().getItemByIdentifier(identifier);
         }
+        ExternalData data = dataCache.getByIdentifier(workspace.getName(), identifier);
+        if (data == null) {
+            long generation = dataCache.getGeneration();
+            data = repository.getDataSource().getItemByIdentifier(identifier);
+            dataCache.put(workspace.getName(), data, generation);
+        }
+        return data;
+    }
 
-        return node;
+    private void invalidateCaches(Collection<String> paths) {
+        final ExternalDataCache dataCache = repository.getDataCache();
+        if (dataCache != null) {
+            dataCache.invalidate(paths);
+        }
+        // the external data may hold the ACL of the node
+        repository.getPermissionCache().invalidate(paths);
     }
 
     @Override
@@ -190,7 +207,7 @@ public class ExternalSessionImpl implements Session {
                     throw new RepositoryException("Provider '" + repository.getProviderKey() + "' is currently unavailable");
                 }
             }
-            ExternalData rootFileObject = repository.getDataSource().getItemByPath("/");
+            ExternalData rootFileObject = getItemByPath("/");
             final ExternalNodeImpl externalNode = new ExternalNodeImpl(rootFileObject, this);
             registerNode(externalNode);
             return externalNode;
@@ -279,7 +296,7 @@ public class ExternalSessionImpl implements Session {
         }
         ExternalContentStoreProvider.setCurrentSession(this);
         try {
-            Node n = new ExternalNodeImpl(repository.getDataSource().getItemByIdentifier(uuid), this);
+            Node n = new ExternalNodeImpl(getItemByIdentifier(uuid), this);
             if (deletedData.containsKey(n.getPath())) {
                 throw new ItemNotFoundException("This node has been deleted");
             }
@@ -345,7 +362,8 @@ public class ExternalSessionImpl implements Session {
                 // Try to get the item as a node
                 ExternalContentStoreProvider.setCurrentSession(this);
                 try {
-                    ExternalData data = repository.getDataSource().getItemByPath(path);
+                    // a node read with a page of children is not registered, but keeps its changes
+                    ExternalData data = changedData.containsKey(path) ? changedData.get(path) : getItemByPath(path);
                     final ExternalNodeImpl node = new ExternalNodeImpl(data, this);
                     registerNode(node);
                     return node;
@@ -353,7 +371,7 @@ public class ExternalSessionImpl implements Session {
                     // Or a property in the parent node
                     ExternalNodeImpl parentFromPath = getFromCacheByPath(parentPath);
                     if (parentFromPath == null) {
-                        ExternalData data = repository.getDataSource().getItemByPath(parentPath);
+                        ExternalData data = getItemByPath(parentPath);
                         final ExternalNodeImpl node = new ExternalNodeImpl(data, this);
                         registerNode(node);
                         parentFromPath = node;
@@ -448,7 +466,7 @@ public class ExternalSessionImpl implements Session {
         } else {
             ExternalContentStoreProvider.setCurrentSession(this);
             try {
-                parentObject = repository.getDataSource().getItemByPath(parentPath);
+                parentObject = getItemByPath(parentPath);
                 final ExternalNodeImpl node = new ExternalNodeImpl(parentObject, this);
                 registerNode(node);
             } finally {
@@ -500,6 +518,52 @@ public class ExternalSessionImpl implements Session {
         }
     }
 
+    /**
+     * @return <code>true</code> if lazy properties of several nodes can be loaded at once by the data source
+     */
+    boolean canPrefetchLazyProperties() {
+        return repository.getDataSource() instanceof ExternalDataSource.CanLoadPropertiesInBatch;
+    }
+
+    /**
+     * Loads the specified lazy properties of several nodes, with a single call to the data source.
+     *
+     * @param paths         paths of the nodes
+     * @param propertyNames names of the properties to load
+     * @return the values by property name, for each path that could be read
+     * @throws RepositoryException in case of error reading the properties
+     */
+    protected Map<String, Map<String, String[]>> getPropertiesValues(List<String> paths, Set<String> propertyNames) throws RepositoryException {
+        final ExternalDataSource dataSource = repository.getDataSource();
+        if (!(dataSource instanceof ExternalDataSource.CanLoadPropertiesInBatch)) {
+            throw new UnsupportedRepositoryOperationException(repository.getProviderKey() + " cannot load lazy properties in batch");
+        }
+        ExternalContentStoreProvider.setCurrentSession(this);
+        try {
+            return ((ExternalDataSource.CanLoadPropertiesInBatch) dataSource).getPropertiesValues(paths, propertyNames);
+        } finally {
+            ExternalContentStoreProvider.removeCurrentSession();
+        }
+    }
+
+    /**
+     * Marks the specified nodes as read together, so that the first access to a lazy property of one of them loads
+     * it for all of them.
+     *
+     * @param nodes the nodes being iterated together
+     */
+    public void prefetchLazyPropertiesTogether(Collection<? extends Item> nodes) {
+        if (nodes.size() < 2 || !canPrefetchLazyProperties()) {
+            return;
+        }
+        LazyPropertiesPrefetch prefetch = new LazyPropertiesPrefetch(this);
+        for (Item node : nodes) {
+            if (node instanceof ExternalNodeImpl) {
+                prefetch.add((ExternalNodeImpl) node);
+            }
+        }
+    }
+
     @Override
     public boolean itemExists(String path) throws RepositoryException {
         // todo : use repository.getDataSource().itemExists(path)
@@ -560,6 +624,7 @@ public class ExternalSessionImpl implements Session {
 
                 //todo : store move in session and move node in save
                 ((ExternalDataSource.Writable) repository.getDataSource()).move(source, dest);
+                invalidateCaches(Arrays.asList(source, dest));
 
                 int oldIndex = previousParentChildren.indexOf(externalNode.getName());
                 previousParentChildren.remove(externalNode.getName());
@@ -601,6 +666,8 @@ public class ExternalSessionImpl implements Session {
 
         if (extensionSession != null && extensionSession.hasPendingChanges()) {
             extensionSession.save();
+            // ACLs of the external nodes are stored in the extension
+            repository.getPermissionCache().invalidateAll();
         }
         if (!(repository.getDataSource() instanceof ExternalDataSource.Writable)) {
             deletedData.clear();
@@ -609,6 +676,8 @@ public class ExternalSessionImpl implements Session {
             return;
         }
         ExternalContentStoreProvider.setCurrentSession(this);
+        // caches are invalidated once for all the saved items
+        Set<String> savedPaths = new HashSet<String>();
         try {
             Map<String, ExternalData> changedDataWithI18n = new LinkedHashMap<String, ExternalData>();
             for (Map.Entry<String, ExternalData> entry : changedData.entrySet()) {
@@ -651,6 +720,7 @@ public class ExternalSessionImpl implements Session {
             orderedData.clear();
             for (ExternalData data : changedDataWithI18n.values()) {
                 writableDataSource.saveItem(data);
+                savedPaths.add(data.getPath());
                 // when data contain binaries we flush the nodes so the binary will be load
                 // from the external data source after an upload, avoid to cache a tmp binary after upload for exemple
                 if (data.getBinaryProperties() != null && data.getBinaryProperties().size() > 0) {
@@ -667,6 +737,7 @@ public class ExternalSessionImpl implements Session {
                 List<String> toBeDeleted = new LinkedList<String>();
                 for (String path : deletedData.keySet()) {
                     writableDataSource.removeItemByPath(path);
+                    savedPaths.add(path);
                     toBeDeleted.add(deletedData.get(path).getId());
                 }
                 getRepository()
@@ -681,6 +752,7 @@ public class ExternalSessionImpl implements Session {
             }
             newItems.clear();
         } finally {
+            invalidateCaches(savedPaths);
             ExternalContentStoreProvider.removeCurrentSession();
         }
     }
@@ -786,7 +858,14 @@ public class ExternalSessionImpl implements Session {
         for (Binary binary : tempBinaries) {
             binary.dispose();
         }
+        for (ExternalDataSource.ChildrenCursor cursor : childrenCursors) {
+            cursor.close();
+        }
+        childrenCursors.clear();
         accessControlManager = null;
+        if (logger.isDebugEnabled() && repository.getDataCache() != null) {
+            logger.debug("Session closed on provider {}, {}", repository.getProviderKey(), repository.getDataCache());
+        }
     }
 
     @Override
@@ -849,6 +928,91 @@ public class ExternalSessionImpl implements Session {
         nodesByIdentifier.put(node.getIdentifier(), node);
     }
 
+    /**
+     * Registers a batch of nodes, resolving the internal identifiers of all of them with bulk lookups in the mapping table
+     * instead of one query per node.
+     *
+     * @param nodesData the data of the nodes to register
+     * @throws RepositoryException in case the identifiers cannot be read or stored
+     */
+    public void registerNodes(Collection<ExternalData> nodesData) throws RepositoryException {
+        prefetchInternalIdentifiers(nodesData);
+        for (ExternalData data : nodesData) {
+            registerNode(data);
+        }
+    }
+
+    /**
+     * Loads (or generates) in bulk the internal identifiers of the given nodes, so that they are available from the
+     * identifier cache when the nodes are created.
+     */
+    private void prefetchInternalIdentifiers(Collection<ExternalData> nodesData) throws RepositoryException {
+        boolean supportsUuid = repository.getDataSource().isSupportsUuid();
+        List<String> externalIds = new ArrayList<String>(nodesData.size());
+        for (ExternalData data : nodesData) {
+            if ((!supportsUuid || data.getId().startsWith(TRANSLATION_PREFIX)) && !nodesByPath.containsKey(data.getPath())) {
+                externalIds.add(data.getId());
+            }
+        }
+        if (externalIds.size() > 1) {
+            repository.getStoreProvider().getOrCreateInternalIdentifiers(externalIds);
+        }
+    }
+
+    /**
+     * Opens a cursor over the children of a node, which is closed on logout if it is not fully read.
+     */
+    ExternalDataSource.ChildrenCursor openChildrenCursor(String path) throws RepositoryException {
+        ExternalDataSource.ChildrenCursor cursor = ((ExternalDataSource.CanLoadChildrenByPage) repository.getDataSource()).openChildrenCursor(path);
+        childrenCursors.add(cursor);
+        return cursor;
+    }
+
+    void closeChildrenCursor(ExternalDataSource.ChildrenCursor cursor) {
+        if (childrenCursors.remove(cursor)) {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Reads the next page of children from a cursor. The page is not registered in the session, so that only the page
+     * being iterated is kept in memory : the internal identifiers of its nodes are resolved in bulk, and their data is
+     * stored in the repository data cache when it is enabled.
+     */
+    List<ExternalData> readChildrenPage(ExternalDataSource.ChildrenCursor cursor, int limit) throws RepositoryException {
+        final ExternalDataCache dataCache = repository.getDataCache();
+        long generation = dataCache != null ? dataCache.getGeneration() : 0;
+        List<ExternalData> page = cursor.nextPage(limit);
+        prefetchInternalIdentifiers(page);
+        if (dataCache != null) {
+            for (ExternalData data : page) {
+                dataCache.put(workspace.getName(), data, generation);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Returns the node of data read with a page of children, or the node registered in the session for its path.
+     */
+    ExternalNodeImpl getNode(ExternalData data) throws RepositoryException {
+        String path = data.getPath();
+        if (deletedData.containsKey(path)) {
+            throw new PathNotFoundException("This node has been deleted");
+        }
+        ExternalNodeImpl node = getFromCacheByPath(path);
+        if (node == null) {
+            ExternalContentStoreProvider.setCurrentSession(this);
+            try {
+                node = new ExternalNodeImpl(changedData.containsKey(path) ? changedData.get(path) : data, this);
+            } finally {
+                ExternalContentStoreProvider.removeCurrentSession();
+            }
+        }
+        getAccessControlManager().checkRead(path);
+        return node;
+    }
+
     public void registerNode(ExternalNodeImpl node) throws RepositoryException {
         nodesByPath.put(node.getPath(), node);
         nodesByIdentifier.put(node.getIdentifier(), node);
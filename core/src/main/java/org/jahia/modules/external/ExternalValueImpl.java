@@ -48,7 +48,6 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.jackrabbit.util.ISO8601;
 
 import javax.jcr.*;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
@@ -134,7 +133,8 @@ public class ExternalValueImpl implements Value {
         if (value instanceof Binary) {
             return (Binary) value;
         }
-        return new ExternalBinaryImpl(new ByteArrayInputStream(getString().getBytes(Charset.forName("UTF-8"))));
+        byte[] bytes = getString().getBytes(Charset.forName("UTF-8"));
+        return new ExternalBinaryImpl(bytes);
     }
 
     public long getLong() throws ValueFormatException, RepositoryException {
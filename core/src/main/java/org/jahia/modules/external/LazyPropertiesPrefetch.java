@@ -0,0 +1,154 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external;
+
+import org.jahia.api.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.PathNotFoundException;
+import javax.jcr.RepositoryException;
+import java.util.*;
+
+/**
+ * Group of nodes read together, like a batch of the children being iterated. The first access to a lazy property of
+ * one of the nodes loads this property for all the nodes of the group, with one call to the data source instead of one
+ * call per node. Only the properties which are accessed are loaded for the group.
+ */
+class LazyPropertiesPrefetch {
+
+    private static final Logger logger = LoggerFactory.getLogger(LazyPropertiesPrefetch.class);
+
+    private final ExternalSessionImpl session;
+    private final List<ExternalData> nodesData = new ArrayList<>();
+    private final Set<String> prefetchedProperties = new HashSet<>();
+    private final Map<String, Map<String, String[]>> values = new HashMap<>();
+
+    LazyPropertiesPrefetch(ExternalSessionImpl session) {
+        this.session = session;
+    }
+
+    void add(ExternalNodeImpl node) {
+        node.setLazyPropertiesPrefetch(this);
+        nodesData.add(node.getData());
+    }
+
+    /**
+     * Returns the values of the lazy property of the specified node, loading it for the whole group on first access.
+     */
+    String[] getPropertyValues(ExternalData data, String propertyName) throws PathNotFoundException {
+        Map<String, String[]> nodeValues = values.get(data.getPath());
+        if (nodeValues == null || !nodeValues.containsKey(propertyName)) {
+            prefetch(Collections.singleton(propertyName));
+            nodeValues = values.get(data.getPath());
+        }
+        if (nodeValues != null && nodeValues.containsKey(propertyName)) {
+            return nodeValues.remove(propertyName);
+        }
+        return session.getPropertyValues(data, propertyName);
+    }
+
+    /**
+     * Loads at once the specified lazy properties of a single node of the group, without loading them for the other
+     * nodes.
+     */
+    void load(ExternalData data, Set<String> propertyNames) {
+        if (propertyNames.size() < 2) {
+            return;
+        }
+        try {
+            Map<String, String[]> nodeValues = session.getPropertiesValues(Collections.singletonList(data.getPath()), propertyNames).get(data.getPath());
+            if (nodeValues != null) {
+                getNodeValues(data.getPath()).putAll(nodeValues);
+            }
+        } catch (RepositoryException e) {
+            // the node will read its properties one by one
+            logger.warn("Cannot load properties " + propertyNames + " of " + data.getPath(), e);
+        }
+    }
+
+    /**
+     * Loads the specified lazy properties for all the nodes of the group which have not been loaded yet.
+     */
+    private void prefetch(Set<String> propertyNames) {
+        Set<String> names = new HashSet<>(propertyNames);
+        names.removeAll(prefetchedProperties);
+        if (names.isEmpty()) {
+            return;
+        }
+        prefetchedProperties.addAll(names);
+
+        List<String> paths = new ArrayList<>();
+        for (ExternalData data : nodesData) {
+            // translation nodes read their lazy properties in the parent node, per language
+            Map<String, String[]> nodeValues = values.get(data.getPath());
+            if (data.getLazyProperties() != null && !Collections.disjoint(data.getLazyProperties(), names)
+                    && (nodeValues == null || !nodeValues.keySet().containsAll(names))
+                    && !Constants.JAHIANT_TRANSLATION.equals(data.getType()) && !data.getProperties().containsKey(Constants.JCR_LANGUAGE)) {
+                paths.add(data.getPath());
+            }
+        }
+        if (paths.size() * names.size() < 2 || !session.canPrefetchLazyProperties()) {
+            return;
+        }
+
+        try {
+            for (Map.Entry<String, Map<String, String[]>> entry : session.getPropertiesValues(paths, names).entrySet()) {
+                getNodeValues(entry.getKey()).putAll(entry.getValue());
+            }
+        } catch (RepositoryException e) {
+            // the nodes will read their properties one by one
+            logger.warn("Cannot prefetch properties " + names + " for " + paths.size() + " nodes", e);
+        }
+    }
+
+    private Map<String, String[]> getNodeValues(String path) {
+        Map<String, String[]> nodeValues = values.get(path);
+        if (nodeValues == null) {
+            nodeValues = new HashMap<>();
+            values.put(path, nodeValues);
+        }
+        return nodeValues;
+    }
+}
@@ -43,8 +43,12 @@
  */
 package org.jahia.modules.external.events;
 
+import org.apache.commons.lang.StringUtils;
 import org.jahia.api.Constants;
 import org.jahia.modules.external.ExternalData;
+import org.jahia.modules.external.ExternalDataCache;
+import org.jahia.modules.external.ExternalPermissionCache;
+import org.jahia.modules.external.ExternalRepositoryImpl;
 import org.jahia.modules.external.ExternalSessionImpl;
 import org.jahia.modules.external.events.model.ApiEventImpl;
 import org.jahia.services.content.*;
@@ -52,6 +56,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.stream.StreamSupport;
 
 public class EventServiceImpl implements EventService {
@@ -73,15 +82,22 @@ public class EventServiceImpl implements EventService {
 
     public static void doSendEvents(Iterable<? extends ApiEvent> events, JCRStoreProvider provider) throws RepositoryException {
         logger.info("Received API events for " + provider.getKey());
+        invalidateCaches(events, provider);
+        List<ExternalData> externalData = new ArrayList<>();
+        for (ApiEvent apiEvent : events) {
+            logger.debug("Event {} for {}", apiEvent.getType(), apiEvent.getPath());
+            ExternalData data = (ExternalData) apiEvent.getInfo().get("externalData");
+            if (data != null) {
+                logger.debug("External data included for {}", data.getPath());
+                externalData.add(data);
+            }
+        }
         JCRCallback<Object> callback = jcrSessionWrapper -> {
+            if (!externalData.isEmpty()) {
+                ExternalSessionImpl externalSession = (ExternalSessionImpl) jcrSessionWrapper.getProviderSession(provider);
+                externalSession.registerNodes(externalData);
+            }
             for (ApiEvent apiEvent : events) {
-                logger.debug("Event {} for {}", apiEvent.getType(), apiEvent.getPath());
-                ExternalData data = (ExternalData) apiEvent.getInfo().get("externalData");
-                if (data != null) {
-                    logger.debug("External data included for {}",data.getPath());
-                    ExternalSessionImpl externalSession = (ExternalSessionImpl) jcrSessionWrapper.getProviderSession(provider);
-                    externalSession.registerNode(data);
-                }
                 JCRObservationManager.addEvent(apiEvent, provider.getMountPoint(), "");
             }
             return null;
@@ -95,4 +111,35 @@ public class EventServiceImpl implements EventService {
         logger.info("API events processed");
     }
 
+    private static void invalidateCaches(Iterable<? extends ApiEvent> events, JCRStoreProvider provider) {
+        if (!(provider.getRepository() instanceof ExternalRepositoryImpl)) {
+            return;
+        }
+        ExternalDataCache dataCache = ((ExternalRepositoryImpl) provider.getRepository()).getDataCache();
+        ExternalPermissionCache permissionCache = ((ExternalRepositoryImpl) provider.getRepository()).getPermissionCache();
+        if (dataCache == null && !permissionCache.isEnabled()) {
+            return;
+        }
+        Set<String> paths = new HashSet<>();
+        for (ApiEvent apiEvent : events) {
+            String path = apiEvent.getPath();
+            if ((apiEvent.getType() & (Event.PROPERTY_ADDED | Event.PROPERTY_CHANGED | Event.PROPERTY_REMOVED)) != 0) {
+                // property events are invalidating the node holding the property
+                path = StringUtils.substringBeforeLast(path, "/");
+                if (path.isEmpty()) {
+                    path = "/";
+                }
+            }
+            paths.add(path);
+            if (apiEvent.getType() == Event.NODE_MOVED && apiEvent.getInfo() != null && apiEvent.getInfo().get("srcAbsPath") instanceof String) {
+                paths.add((String) apiEvent.getInfo().get("srcAbsPath"));
+            }
+        }
+        if (dataCache != null) {
+            dataCache.invalidate(paths);
+        }
+        // the external data may hold the ACL of the node
+        permissionCache.invalidate(paths);
+    }
+
 }
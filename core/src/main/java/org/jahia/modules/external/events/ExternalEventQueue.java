@@ -0,0 +1,376 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.events;
+
+import org.jahia.services.content.ApiEvent;
+import org.jahia.services.content.JCRSessionFactory;
+import org.jahia.services.content.JCRStoreProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.observation.Event;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded queue of API events for one provider, processed asynchronously in batches by a worker thread.
+ * <p>
+ * Consecutive events of the same type on the same path are coalesced : the latest event replaces the pending one,
+ * so that a burst of updates on a node is processed once, with the latest external data. Moves are never coalesced, as
+ * each of them has its own source path.
+ */
+public class ExternalEventQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExternalEventQueue.class);
+
+    /**
+     * Time in seconds given to the worker to process the pending events when the queue is stopped
+     */
+    public static final long STOP_TIMEOUT = 30;
+
+    /**
+     * Result of {@link #offer(Collection)}
+     */
+    public enum OfferResult {
+        /**
+         * The events have been queued
+         */
+        ACCEPTED,
+        /**
+         * The queue is full, the events should be sent again later
+         */
+        QUEUE_FULL,
+        /**
+         * The queue is not running
+         */
+        STOPPED
+    }
+
+    private static class PendingEvent {
+        private ApiEvent event;
+        private final long queuedAt;
+
+        PendingEvent(ApiEvent event, long queuedAt) {
+            this.event = event;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    private final JCRStoreProvider provider;
+    private final int capacity;
+    private final int batchSize;
+    private final long batchDelay;
+
+    private final Object lock = new Object();
+    private final Deque<PendingEvent> queue = new ArrayDeque<>();
+    private final Map<String, PendingEvent> lastEventByPath = new HashMap<>();
+    private ExecutorService worker;
+    private long workerGeneration;
+    private volatile boolean running;
+
+    private final LongAdder processedCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private volatile long lastBatchLag;
+
+    /**
+     * @param provider   the provider receiving the events
+     * @param capacity   the maximum number of pending events
+     * @param batchSize  the maximum number of events processed together
+     * @param batchDelay the time in milliseconds to wait for more events before processing an incomplete batch
+     */
+    public ExternalEventQueue(JCRStoreProvider provider, int capacity, int batchSize, long batchDelay) {
+        this.provider = provider;
+        this.capacity = capacity;
+        this.batchSize = Math.max(1, batchSize);
+        this.batchDelay = batchDelay;
+    }
+
+    public void start() {
+        synchronized (lock) {
+            if (running) {
+                return;
+            }
+            running = true;
+            if (worker != null) {
+                // the previous worker has stopped on an error
+                worker.shutdown();
+            }
+            worker = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "external-provider-" + provider.getKey() + "-events");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // a worker still running after a stop timeout must not touch the queue of this new worker
+            final long generation = ++workerGeneration;
+            worker.execute(() -> drain(generation));
+        }
+    }
+
+    /**
+     * Stops accepting events and lets the worker process the pending ones, which have already been acknowledged, for
+     * at most {@link #STOP_TIMEOUT} seconds. Events still pending after that are discarded.
+     */
+    public void stop() {
+        ExecutorService stoppedWorker;
+        synchronized (lock) {
+            if (worker == null) {
+                return;
+            }
+            running = false;
+            stoppedWorker = worker;
+            worker = null;
+            lock.notifyAll();
+        }
+        stoppedWorker.shutdown();
+        try {
+            if (!stoppedWorker.awaitTermination(STOP_TIMEOUT, TimeUnit.SECONDS)) {
+                logger.warn("Pending API events for {} not processed after {} seconds", provider.getKey(), STOP_TIMEOUT);
+                stoppedWorker.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            stoppedWorker.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues the events, unless the queue cannot take all of them. Events are either all queued or all rejected.
+     *
+     * @param events the events to queue
+     * @return the result of the operation
+     */
+    public OfferResult offer(Collection<? extends ApiEvent> events) {
+        synchronized (lock) {
+            if (!running) {
+                return OfferResult.STOPPED;
+            }
+            if (queue.size() + events.size() > capacity && queue.size() + countNewPaths(events) > capacity) {
+                rejectedCount.add(events.size());
+                return OfferResult.QUEUE_FULL;
+            }
+            long now = System.currentTimeMillis();
+            for (ApiEvent event : events) {
+                PendingEvent last = lastEventByPath.get(event.getPath());
+                if (last != null && canCoalesce(last.event.getType(), event)) {
+                    last.event = event;
+                    coalescedCount.increment();
+                } else {
+                    PendingEvent pendingEvent = new PendingEvent(event, now);
+                    queue.add(pendingEvent);
+                    lastEventByPath.put(event.getPath(), pendingEvent);
+                }
+            }
+            lock.notifyAll();
+            return OfferResult.ACCEPTED;
+        }
+    }
+
+    private int countNewPaths(Collection<? extends ApiEvent> events) {
+        Map<String, Integer> lastTypes = new HashMap<>();
+        int count = 0;
+        for (ApiEvent event : events) {
+            Integer lastType = lastTypes.get(event.getPath());
+            if (lastType == null) {
+                PendingEvent last = lastEventByPath.get(event.getPath());
+                lastType = last != null ? last.event.getType() : null;
+            }
+            if (lastType == null || !canCoalesce(lastType, event)) {
+                count++;
+            }
+            lastTypes.put(event.getPath(), event.getType());
+        }
+        return count;
+    }
+
+    private static boolean canCoalesce(int pendingType, ApiEvent event) {
+        return pendingType == event.getType() && event.getType() != Event.NODE_MOVED;
+    }
+
+    /**
+     * Processes the events until the queue is stopped and empty. When the worker exits, because it is interrupted or on
+     * an error, the queue is marked as stopped and the events it could not process are discarded, unless the queue has
+     * been started again with a new worker meanwhile.
+     *
+     * @param generation the generation of this worker, incremented on each start
+     */
+    private void drain(long generation) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<ApiEvent> batch = new ArrayList<>(batchSize);
+                long oldest;
+                synchronized (lock) {
+                    try {
+                        while (running && workerGeneration == generation && queue.isEmpty()) {
+                            lock.wait();
+                        }
+                        if (running && workerGeneration == generation && queue.size() < batchSize && batchDelay > 0) {
+                            long end = queue.peekFirst().queuedAt + batchDelay;
+                            long wait;
+                            while (running && workerGeneration == generation && queue.size() < batchSize && (wait = end - System.currentTimeMillis()) > 0) {
+                                lock.wait(wait);
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    if (workerGeneration != generation || queue.isEmpty()) {
+                        // replaced by a new worker, or stopped with all events processed
+                        return;
+                    }
+                    oldest = queue.peekFirst().queuedAt;
+                    while (batch.size() < batchSize && !queue.isEmpty()) {
+                        PendingEvent pendingEvent = queue.pollFirst();
+                        if (lastEventByPath.get(pendingEvent.event.getPath()) == pendingEvent) {
+                            lastEventByPath.remove(pendingEvent.event.getPath());
+                        }
+                        batch.add(pendingEvent.event);
+                    }
+                }
+                lastBatchLag = System.currentTimeMillis() - oldest;
+                try {
+                    EventServiceImpl.doSendEvents(batch, provider);
+                    processedCount.add(batch.size());
+                } catch (Exception e) {
+                    failedCount.add(batch.size());
+                    logger.error("Cannot process " + batch.size() + " API events for " + provider.getKey(), e);
+                } finally {
+                    JCRSessionFactory.getInstance().closeAllSessions();
+                }
+            }
+        } catch (Error e) {
+            logger.error("API events worker for " + provider.getKey() + " stopped", e);
+            throw e;
+        } finally {
+            synchronized (lock) {
+                if (workerGeneration == generation) {
+                    running = false;
+                    if (!queue.isEmpty()) {
+                        logger.warn("Discarding {} pending API events for {}", queue.size(), provider.getKey());
+                        failedCount.add(queue.size());
+                        queue.clear();
+                        lastEventByPath.clear();
+                    }
+                }
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of events waiting to be processed
+     */
+    public int getDepth() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * @return the time in milliseconds the oldest pending event has been waiting, 0 if the queue is empty
+     */
+    public long getLag() {
+        synchronized (lock) {
+            return queue.isEmpty() ? 0 : System.currentTimeMillis() - queue.peekFirst().queuedAt;
+        }
+    }
+
+    /**
+     * @return the time in milliseconds the oldest event of the last processed batch had been waiting
+     */
+    public long getLastBatchLag() {
+        return lastBatchLag;
+    }
+
+    public long getProcessedCount() {
+        return processedCount.sum();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * @return the metrics of the queue, by name
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("running", running);
+        metrics.put("capacity", capacity);
+        metrics.put("depth", getDepth());
+        metrics.put("lag", getLag());
+        metrics.put("lastBatchLag", lastBatchLag);
+        metrics.put("processed", getProcessedCount());
+        metrics.put("coalesced", getCoalescedCount());
+        metrics.put("rejected", getRejectedCount());
+        metrics.put("failed", getFailedCount());
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return "ExternalEventQueue" + getMetrics();
+    }
+}
@@ -48,7 +48,6 @@ import org.jahia.modules.external.ExternalData;
 
 import javax.jcr.Binary;
 import javax.xml.bind.annotation.adapters.XmlAdapter;
-import java.io.ByteArrayInputStream;
 import java.lang.reflect.Array;
 import java.util.*;
 import java.util.function.Function;
@@ -85,7 +84,10 @@ public class EventInfoAdapter extends XmlAdapter<Map<String, Object>, Map<String
             }
 
             if (dataAsMap.containsKey("binaryProperties")) {
-                data.setBinaryProperties(convertMembersFromListToArray((Map<String, List<String>>) dataAsMap.get("binaryProperties"), Binary.class, s-> (new ExternalBinaryImpl(new ByteArrayInputStream(Base64.getDecoder().decode(s))))));
+                data.setBinaryProperties(convertMembersFromListToArray((Map<String, List<String>>) dataAsMap.get("binaryProperties"), Binary.class, s -> {
+                    byte[] bytes = Base64.getDecoder().decode(s);
+                    return new ExternalBinaryImpl(bytes);
+                }));
             }
 
             transformed.put("externalData", data);
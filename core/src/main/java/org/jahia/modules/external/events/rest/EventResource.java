@@ -45,6 +45,7 @@ package org.jahia.modules.external.events.rest;
 
 import org.jahia.modules.external.ExternalContentStoreProvider;
 import org.jahia.modules.external.events.EventServiceImpl;
+import org.jahia.modules.external.events.ExternalEventQueue;
 import org.jahia.modules.external.events.model.ApiEventImpl;
 import org.jahia.modules.external.events.validation.ValidList;
 import org.jahia.services.content.JCRSessionFactory;
@@ -54,16 +55,21 @@ import javax.inject.Inject;
 import javax.jcr.RepositoryException;
 import javax.validation.Valid;
 import javax.ws.rs.*;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 /**
- * REST endpoint for external-provider events
+ * REST endpoint for external-provider events. Events are processed when they are received, or queued when the provider
+ * has an event queue, in which case the metrics of the queue can be read with a GET on the same path.
  */
 @Path("/external-provider/events")
 @Produces({ MediaType.APPLICATION_JSON })
 public class EventResource {
 
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final String RETRY_AFTER_SECONDS = "1";
+
     private EventApiConfig eventApiConfig;
 
     @Inject
@@ -92,10 +98,56 @@ public class EventResource {
             throw new WebApplicationException(Response.Status.FORBIDDEN);
         }
 
-        if (provider instanceof ExternalContentStoreProvider) {
-            EventServiceImpl.doSendEvents(events, provider);
+        ExternalEventQueue eventQueue = ((ExternalContentStoreProvider) provider).getEventQueue();
+        if (eventQueue != null) {
+            switch (eventQueue.offer(events)) {
+                case ACCEPTED:
+                    return Response.accepted().build();
+                case QUEUE_FULL:
+                    return Response.status(TOO_MANY_REQUESTS)
+                            .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                            .type(MediaType.TEXT_PLAIN_TYPE)
+                            .entity("Event queue is full for " + providerKey)
+                            .build();
+                default:
+                    return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                            .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                            .type(MediaType.TEXT_PLAIN_TYPE)
+                            .entity("Event queue is not running for " + providerKey)
+                            .build();
+            }
         }
 
+        EventServiceImpl.doSendEvents(events, provider);
+
         return Response.ok().build();
     }
+
+    @GET
+    @Path("/{providerKey:.*}")
+    public Response getQueueMetrics(@PathParam("providerKey") String providerKey,
+                                    @HeaderParam("apiKey") String apiKey) {
+
+        JCRStoreProvider provider = JCRSessionFactory.getInstance().getProviders().get(providerKey);
+        if (!(provider instanceof ExternalContentStoreProvider)) {
+            Response.ResponseBuilder response = Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .type(MediaType.TEXT_PLAIN_TYPE)
+                    .entity("No external provider found (invalidValue = " + providerKey +  ")");
+            return response.build();
+        }
+
+        if (!eventApiConfig.checkApiKey(apiKey, providerKey)) {
+            throw new WebApplicationException(Response.Status.FORBIDDEN);
+        }
+
+        ExternalEventQueue eventQueue = ((ExternalContentStoreProvider) provider).getEventQueue();
+        if (eventQueue == null) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .type(MediaType.TEXT_PLAIN_TYPE)
+                    .entity("Events are not queued for " + providerKey)
+                    .build();
+        }
+        return Response.ok(eventQueue.getMetrics()).build();
+    }
 }
@@ -47,6 +47,7 @@ import net.sf.ehcache.Cache;
 import net.sf.ehcache.Element;
 import org.apache.commons.lang.StringUtils;
 import org.hibernate.*;
+import org.hibernate.exception.ConstraintViolationException;
 import org.jahia.modules.external.ExternalProviderInitializerService;
 import org.jahia.services.cache.ehcache.EhCacheProvider;
 import org.jahia.services.content.JCRStoreProvider;
@@ -54,10 +55,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.jcr.RepositoryException;
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
 
 /**
  * {@inheritDoc}
@@ -66,6 +64,9 @@ public class ExternalProviderInitializerServiceImpl implements ExternalProviderI
 
     private static final String ID_CACHE_NAME = "ExternalIdentifierMapping";
 
+    // Maximum number of values in the IN clause of a bulk query, and number of inserts per flush
+    private static final int BATCH_SIZE = 500;
+
     private static final Logger logger = LoggerFactory.getLogger(ExternalProviderInitializerServiceImpl.class);
 
     private SessionFactory hibernateSessionFactory;
@@ -219,6 +220,66 @@ public class ExternalProviderInitializerServiceImpl implements ExternalProviderI
         return uuid;
     }
 
+    @Override
+    public Map<String, String> getInternalIdentifiers(Collection<String> externalIds, String providerKey) throws RepositoryException {
+
+        Map<String, String> uuids = new HashMap<String, String>(externalIds.size());
+        Cache idCache = getIdentifierCache();
+        Map<Integer, List<String>> missingIdsByHash = new LinkedHashMap<Integer, List<String>>();
+        for (String externalId : externalIds) {
+            Element cacheElement = idCache.get(getCacheKey(externalId, providerKey));
+            if (cacheElement != null && cacheElement.getObjectValue() != null) {
+                uuids.put(externalId, (String) cacheElement.getObjectValue());
+            } else {
+                List<String> ids = missingIdsByHash.get(externalId.hashCode());
+                if (ids == null) {
+                    ids = new ArrayList<String>(1);
+                    missingIdsByHash.put(externalId.hashCode(), ids);
+                }
+                ids.add(externalId);
+            }
+        }
+
+        if (missingIdsByHash.isEmpty()) {
+            return uuids;
+        }
+
+        StatelessSession session = null;
+        try {
+            session = getHibernateSessionFactory().openStatelessSession();
+            session.beginTransaction();
+
+            Query selectStmt = session.createQuery("from UuidMapping where providerKey=:providerKey and externalIdHash in (:idHashes)")
+                    .setString("providerKey", providerKey).setReadOnly(true);
+            List<Integer> hashes = new ArrayList<Integer>(missingIdsByHash.keySet());
+            for (int i = 0; i < hashes.size(); i += BATCH_SIZE) {
+                // First select mapping objects by external ID hashcodes, then find the desired ones among the results.
+                List<?> results = selectStmt.setParameterList("idHashes", hashes.subList(i, Math.min(i + BATCH_SIZE, hashes.size()))).list();
+                for (Object result : results) {
+                    UuidMapping uuidMapping = (UuidMapping) result;
+                    List<String> ids = missingIdsByHash.get(uuidMapping.getExternalId().hashCode());
+                    if (ids != null && ids.contains(uuidMapping.getExternalId())) {
+                        uuids.put(uuidMapping.getExternalId(), uuidMapping.getInternalUuid());
+                        idCache.put(new Element(getCacheKey(uuidMapping.getExternalId(), providerKey), uuidMapping.getInternalUuid(), true));
+                    }
+                }
+            }
+
+            session.getTransaction().commit();
+        } catch (Exception e) {
+            if (session != null) {
+                session.getTransaction().rollback();
+            }
+            throw new RepositoryException(e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+
+        return uuids;
+    }
+
     @Override
     public Integer getProviderId(String providerKey) throws RepositoryException {
         ExternalProviderID providerId = null;
@@ -265,7 +326,7 @@ public class ExternalProviderInitializerServiceImpl implements ExternalProviderI
         UuidMapping uuidMapping = new UuidMapping();
         uuidMapping.setExternalId(externalId);
         uuidMapping.setProviderKey(providerKey);
-        uuidMapping.setInternalUuid(providerId + "-" + StringUtils.substringAfter(UUID.randomUUID().toString(), "-"));
+        uuidMapping.setInternalUuid(generateInternalUuid(providerId));
         org.hibernate.Session session = null;
         Thread currentThread = Thread.currentThread();
         ClassLoader previousClassLoader = currentThread.getContextClassLoader();
@@ -294,6 +355,101 @@ public class ExternalProviderInitializerServiceImpl implements ExternalProviderI
         return uuidMapping.getInternalUuid();
     }
 
+    @Override
+    public Map<String, String> mapInternalIdentifiers(Collection<String> externalIds, String providerKey, String providerId)
+            throws RepositoryException {
+        Map<String, String> uuids = new LinkedHashMap<String, String>(externalIds.size());
+        if (externalIds.isEmpty()) {
+            return uuids;
+        }
+        Thread currentThread = Thread.currentThread();
+        ClassLoader previousClassLoader = currentThread.getContextClassLoader();
+        currentThread.setContextClassLoader(this.getClass().getClassLoader());
+        try {
+            List<String> ids = new ArrayList<String>(new LinkedHashSet<String>(externalIds));
+            for (int i = 0; i < ids.size(); i += BATCH_SIZE) {
+                List<String> batch = ids.subList(i, Math.min(i + BATCH_SIZE, ids.size()));
+                try {
+                    uuids.putAll(insertMappings(batch, providerKey, providerId));
+                } catch (ConstraintViolationException e) {
+                    // some of the nodes have been mapped concurrently : use their mappings and only insert the missing ones
+                    logger.debug("Mappings for external nodes inserted concurrently [provider: {}], reading them again", providerKey);
+                    Map<String, String> mapped = getInternalIdentifiers(batch, providerKey);
+                    uuids.putAll(mapped);
+                    List<String> missingIds = new ArrayList<String>(batch.size() - mapped.size());
+                    for (String externalId : batch) {
+                        if (!mapped.containsKey(externalId)) {
+                            missingIds.add(externalId);
+                        }
+                    }
+                    if (!missingIds.isEmpty()) {
+                        try {
+                            uuids.putAll(insertMappings(missingIds, providerKey, providerId));
+                        } catch (ConstraintViolationException again) {
+                            throw new RepositoryException("Error storing mappings for " + missingIds.size() + " external nodes [provider: "
+                                    + providerKey + "]", again);
+                        }
+                    }
+                }
+            }
+        } finally {
+            currentThread.setContextClassLoader(previousClassLoader);
+        }
+
+        return uuids;
+    }
+
+    /**
+     * Inserts the mappings of a batch of external nodes in a single transaction, and caches them once committed.
+     *
+     * @throws ConstraintViolationException if one of the nodes is already mapped, the transaction is rolled back
+     */
+    private Map<String, String> insertMappings(List<String> externalIds, String providerKey, String providerId)
+            throws RepositoryException {
+        Map<String, String> uuids = new LinkedHashMap<String, String>(externalIds.size());
+        org.hibernate.Session session = null;
+        try {
+            session = getHibernateSessionFactory().openSession();
+            session.setFlushMode(FlushMode.MANUAL);
+            session.beginTransaction();
+            for (String externalId : externalIds) {
+                UuidMapping uuidMapping = new UuidMapping();
+                uuidMapping.setExternalId(externalId);
+                uuidMapping.setProviderKey(providerKey);
+                uuidMapping.setInternalUuid(generateInternalUuid(providerId));
+                session.save(uuidMapping);
+                uuids.put(externalId, uuidMapping.getInternalUuid());
+            }
+            session.flush();
+            session.getTransaction().commit();
+        } catch (ConstraintViolationException e) {
+            if (session != null) {
+                session.getTransaction().rollback();
+            }
+            throw e;
+        } catch (Exception e) {
+            if (session != null) {
+                session.getTransaction().rollback();
+            }
+            throw new RepositoryException("Error storing mappings for " + externalIds.size() + " external nodes [provider: "
+                    + providerKey + "]", e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+
+        // cache them
+        for (Map.Entry<String, String> entry : uuids.entrySet()) {
+            getIdentifierCache().put(new Element(getCacheKey(entry.getKey(), providerKey), entry.getValue(), true));
+        }
+        return uuids;
+    }
+
+    private static String generateInternalUuid(String providerId) {
+        return providerId + "-" + StringUtils.substringAfter(UUID.randomUUID().toString(), "-");
+    }
+
     @Override
     public void removeProvider(String providerKey) throws RepositoryException {
         SessionFactory hibernateSession = getHibernateSessionFactory();
@@ -339,6 +495,13 @@ public class ExternalProviderInitializerServiceImpl implements ExternalProviderI
         }
     }
 
+    /**
+     * Sets the ID mapping cache directly, when the service is not created with an {@link EhCacheProvider}.
+     */
+    public void setIdentifierCache(Cache idCache) {
+        this.idCache = idCache;
+    }
+
     @Override
     public void updateExternalIdentifier(String oldExternalId, String newExternalId, String providerKey,
                                          boolean includeDescendants) throws RepositoryException {
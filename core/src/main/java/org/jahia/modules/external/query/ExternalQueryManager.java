@@ -331,22 +331,15 @@ public class ExternalQueryManager implements QueryManager {
                 } else if (!isCount) {
                     if (results == null) {
                         // No previous results, no merge to do
+                        if (dataSource instanceof ExternalDataSource.SearchableIterator) {
+                            // Stream the results, they are read from the data source when the result is iterated
+                            return new ExternalQueryResult(this, ((ExternalDataSource.SearchableIterator) dataSource).searchIterator(this),
+                                    dataSource instanceof ExternalDataSource.SupportCount, workspace);
+                        }
                         results = ((ExternalDataSource.Searchable) dataSource).search(this);
-                    } else if (noConstraints) {
-                        // Previous results, but only in extended nodes, no merge required - concat only
-                        results.addAll(((ExternalDataSource.Searchable) dataSource).search(this));
                     } else {
-                        List<String> providerResult = ((ExternalDataSource.Searchable) dataSource).search(this);
-                        for (String s : providerResult) {
-                            // Skip duplicate result
-                            if (!results.contains(s)) {
-                                results.add(s);
-                                // if results size match the original limit, return them ..
-                                if (originalLimit > -1 && results.size() >= originalLimit) {
-                                    break;
-                                }
-                            }
-                        }
+                        // Previous results, concat only if they are only in extended nodes, otherwise skip duplicates
+                        mergeResults(results, search(dataSource), !noConstraints, originalLimit);
                     }
                 }
             } catch (UnsupportedRepositoryOperationException e) {
@@ -358,6 +351,13 @@ public class ExternalQueryManager implements QueryManager {
             return buildQueryResult(results, dataSource, isCount, count);
         }
 
+        private Iterator<String> search(ExternalDataSource dataSource) throws RepositoryException {
+            if (dataSource instanceof ExternalDataSource.SearchableIterator) {
+                return ((ExternalDataSource.SearchableIterator) dataSource).searchIterator(this);
+            }
+            return ((ExternalDataSource.Searchable) dataSource).search(this).iterator();
+        }
+
         private boolean isNoConstraints() throws RepositoryException {
             boolean noConstraints = false;
             try {
@@ -483,4 +483,24 @@ public class ExternalQueryManager implements QueryManager {
         }
 
     }
+
+    /**
+     * Appends the results of the provider to the results found in the extensions.
+     *
+     * @param results        the results found in the extensions, completed by this method
+     * @param providerResult the results of the provider
+     * @param skipDuplicates if true, the provider results already found in the extensions are skipped, otherwise the
+     *                       extension results only hold extended nodes, that the provider does not return
+     * @param limit          the maximum number of results, or -1
+     */
+    static void mergeResults(List<String> results, Iterator<String> providerResult, boolean skipDuplicates, long limit) {
+        Set<String> previousResults = skipDuplicates ? new HashSet<>(results) : null;
+        // if results size match the original limit, return them ..
+        while (providerResult.hasNext() && (limit < 0 || results.size() < limit)) {
+            String s = providerResult.next();
+            if (previousResults == null || previousResults.add(s)) {
+                results.add(s);
+            }
+        }
+    }
 }
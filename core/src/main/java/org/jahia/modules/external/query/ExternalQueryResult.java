@@ -43,9 +43,11 @@
  */
 package org.jahia.modules.external.query;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import javax.jcr.*;
 import javax.jcr.query.QueryResult;
@@ -56,12 +58,19 @@ import javax.jcr.query.qom.QueryObjectModel;
 import javax.jcr.query.qom.Selector;
 
 import org.apache.commons.lang.ArrayUtils;
+import org.jahia.modules.external.ExternalContentStoreProvider;
+import org.jahia.modules.external.ExternalDataSource;
+import org.jahia.modules.external.ExternalQuery;
 import org.jahia.modules.external.ExternalWorkspaceImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * An implementation of the query result, returned by the external provider search.
+ * <p>
+ * The result paths can be read lazily from the data source: they are pulled from the source iterator only when the
+ * result is iterated, and kept so that the result can be iterated more than once. Nodes are only resolved when they
+ * are returned by the iterators.
  *
  * @author Sergiy Shyrkov
  */
@@ -73,8 +82,18 @@ class ExternalQueryResult implements QueryResult {
 
     private QueryObjectModel qom;
 
+    private Iterator<String> source;
+
     private List<String> results;
 
+    private long size;
+
+    private boolean countable;
+
+    private long offset;
+
+    private long limit;
+
     private String[] selectors;
 
     private ExternalWorkspaceImpl workspace;
@@ -93,6 +112,33 @@ class ExternalQueryResult implements QueryResult {
         super();
         this.qom = qom;
         this.results = results;
+        this.size = results.size();
+        this.workspace = workspace;
+    }
+
+    /**
+     * Initializes an instance of this class with results that are read lazily.
+     *
+     * @param qom
+     *            the query object modules used for the search
+     * @param source
+     *            the iterator over the result IDs matching the search criteria
+     * @param countable
+     *            <code>true</code> if the size can be computed with {@link ExternalDataSource.SupportCount} instead of
+     *            reading all results
+     * @param workspace
+     *            the current provider workspace
+     */
+    ExternalQueryResult(ExternalQuery qom, Iterator<String> source, boolean countable, ExternalWorkspaceImpl workspace) {
+        super();
+        this.qom = qom;
+        this.source = source;
+        this.results = new ArrayList<String>();
+        this.size = -1;
+        this.countable = countable;
+        // keep the paging of the query as it is now, the query object may be reused
+        this.offset = qom.getOffset();
+        this.limit = qom.getLimit();
         this.workspace = workspace;
     }
 
@@ -117,14 +163,12 @@ class ExternalQueryResult implements QueryResult {
 
     @Override
     public NodeIterator getNodes() throws RepositoryException {
-        final Iterator<String> it = results.iterator();
-        return new ExternalQueryNodeIterator(it);
+        return new ExternalQueryNodeIterator();
     }
 
     @Override
     public RowIterator getRows() throws RepositoryException {
-        final Iterator<String> it = results.iterator();
-        return new ExternalQueryRowIterator(it);
+        return new ExternalQueryRowIterator();
     }
 
     @Override
@@ -140,81 +184,119 @@ class ExternalQueryResult implements QueryResult {
         return selectors;
     }
 
-    private class ExternalQueryNodeIterator implements NodeIterator {
-        private final Iterator<String> it;
-        private int pos;
+    /**
+     * Returns the result at the specified index, reading it from the source if needed.
+     *
+     * @return the result path or <code>null</code> if there are less results
+     */
+    private String getResult(int index) {
+        if (index >= results.size() && source != null) {
+            ExternalContentStoreProvider.setCurrentSession(workspace.getSession());
+            try {
+                while (index >= results.size() && source.hasNext()) {
+                    results.add(source.next());
+                }
+                if (!source.hasNext()) {
+                    size = results.size();
+                    source = null;
+                }
+            } finally {
+                ExternalContentStoreProvider.removeCurrentSession();
+            }
+        }
+        return index < results.size() ? results.get(index) : null;
+    }
+
+    private long getResultSize() {
+        if (size < 0 && countable) {
+            size = count();
+        }
+        if (size < 0) {
+            getResult(Integer.MAX_VALUE);
+        }
+        return size;
+    }
 
-        public ExternalQueryNodeIterator(Iterator<String> it) {
-            this.it = it;
-            pos = 0;
+    /**
+     * Computes the size of the result with the count of the data source, taking into account the offset and limit of
+     * the query.
+     */
+    private long count() {
+        ExternalDataSource dataSource = workspace.getSession().getRepository().getDataSource();
+        ExternalQuery query = (ExternalQuery) qom;
+        ExternalContentStoreProvider.setCurrentSession(workspace.getSession());
+        try {
+            long count = Math.max(0, ((ExternalDataSource.SupportCount) dataSource).count(query) - offset);
+            return limit > -1 ? Math.min(count, limit) : count;
+        } catch (RepositoryException e) {
+            logger.warn("Cannot count results, reading all of them instead", e);
+            return -1;
+        } finally {
+            ExternalContentStoreProvider.removeCurrentSession();
         }
+    }
+
+    /**
+     * Base iterator over the results, resolving each node only when it is returned. As before results were streamed,
+     * a result which cannot be resolved is logged and returned as <code>null</code>, so that the iterated results
+     * always match the size.
+     */
+    private abstract class ResultIterator {
+        private int pos = 0;
 
-        @Override
         public long getPosition() {
             return pos;
         }
 
-        @Override
         public long getSize() {
-            return results.size();
+            return getResultSize();
         }
 
-        @Override
         public boolean hasNext() {
-            return it.hasNext();
-        }
-
-        @Override
-        public Object next() {
-            return nextNode();
+            return getResult(pos) != null;
         }
 
-        @Override
-        public Node nextNode() {
+        protected Node nextResultNode() {
+            String path = getResult(pos);
+            if (path == null) {
+                throw new NoSuchElementException();
+            }
+            pos++;
             try {
-                return workspace.getSession().getNode(it.next());
+                return workspace.getSession().getNode(path);
             } catch (RepositoryException e) {
                 logger.error(e.getMessage(), e);
                 return null;
             }
         }
 
-        @Override
         public void remove() {
             throw new UnsupportedOperationException();
         }
 
         public void skip(long skipNum) {
-            for (int i = 0; i < skipNum; i++) {
-                it.next();
+            // skip the paths without resolving their nodes
+            if (skipNum > 0 && getResult((int) Math.min(Integer.MAX_VALUE, pos + skipNum - 1)) == null) {
+                throw new NoSuchElementException();
             }
             pos += skipNum;
         }
     }
 
-    private class ExternalQueryRowIterator implements RowIterator {
-        private final Iterator<String> it;
-        private int pos;
-
-        public ExternalQueryRowIterator(Iterator<String> it) {
-            this.it = it;
-            pos = 0;
-        }
+    private class ExternalQueryNodeIterator extends ResultIterator implements NodeIterator {
 
         @Override
-        public long getPosition() {
-            return pos;
+        public Object next() {
+            return nextNode();
         }
 
         @Override
-        public long getSize() {
-            return results.size();
+        public Node nextNode() {
+            return nextResultNode();
         }
+    }
 
-        @Override
-        public boolean hasNext() {
-            return it.hasNext();
-        }
+    private class ExternalQueryRowIterator extends ResultIterator implements RowIterator {
 
         @Override
         public Object next() {
@@ -223,25 +305,8 @@ class ExternalQueryResult implements QueryResult {
 
         @Override
         public Row nextRow() {
-            try {
-                final Node n = workspace.getSession().getNode(it.next());
-                return new ExternalQueryRow(n);
-            } catch (RepositoryException e) {
-                logger.error(e.getMessage(), e);
-                return null;
-            }
-        }
-
-        @Override
-        public void remove() {
-            throw new UnsupportedOperationException();
-        }
-
-        public void skip(long skipNum) {
-            for (int i = 0; i < skipNum; i++) {
-                it.next();
-            }
-            pos += skipNum;
+            Node n = nextResultNode();
+            return n != null ? new ExternalQueryRow(n) : null;
         }
 
         private class ExternalQueryRow implements Row {
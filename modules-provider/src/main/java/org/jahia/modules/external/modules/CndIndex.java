@@ -0,0 +1,369 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.modules;
+
+import org.jahia.modules.external.ExternalData;
+import org.jahia.services.content.nodetypes.ExtendedItemDefinition;
+import org.jahia.services.content.nodetypes.ExtendedNodeDefinition;
+import org.jahia.services.content.nodetypes.ExtendedNodeType;
+import org.jahia.services.content.nodetypes.ExtendedPropertyDefinition;
+import org.jahia.services.content.nodetypes.NodeTypeRegistry;
+
+import javax.jcr.nodetype.NoSuchNodeTypeException;
+import javax.jcr.nodetype.NodeTypeIterator;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * In-memory index of the definitions files of a module : for each CND file path, the node types of the module and
+ * their property and child node definitions by name, as listed in the modules tree.
+ * <p>
+ * The content of the registry is copied when a file is indexed, so that the index does not change when the registry
+ * is modified. The index is copied on each update and published as a whole, so that readers always get a consistent
+ * snapshot without locking. Updates are done by the data source when a definitions file is written, or when the file
+ * monitor detects a change. Each file is indexed with the digest of its content, so that changes done outside of the
+ * data source are detected even if the modification date of the file is not.
+ */
+public class CndIndex {
+
+    /**
+     * Copy of the data of a node type or item definition, as shown in the modules tree.
+     */
+    public static final class CndItem {
+
+        private final String type;
+        private final Map<String, String[]> properties;
+        private final Map<String, Map<String, String[]>> i18nProperties;
+
+        CndItem(ExternalData data) {
+            this.type = data.getType();
+            this.properties = copy(data.getProperties());
+            Map<String, Map<String, String[]>> i18nProperties = new HashMap<>();
+            if (data.getI18nProperties() != null) {
+                for (Map.Entry<String, Map<String, String[]>> entry : data.getI18nProperties().entrySet()) {
+                    i18nProperties.put(entry.getKey(), copy(entry.getValue()));
+                }
+            }
+            this.i18nProperties = Collections.unmodifiableMap(i18nProperties);
+        }
+
+        private static Map<String, String[]> copy(Map<String, String[]> properties) {
+            Map<String, String[]> copy = new HashMap<>();
+            for (Map.Entry<String, String[]> entry : properties.entrySet()) {
+                copy.put(entry.getKey(), entry.getValue() != null ? entry.getValue().clone() : null);
+            }
+            return copy;
+        }
+
+        /**
+         * @return the node type of the item in the modules tree
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * @return new data for the item at the specified path, which can be modified by the caller
+         */
+        public ExternalData toExternalData(String path) {
+            ExternalData data = new ExternalData(path, path, type, copy(properties));
+            Map<String, Map<String, String[]>> i18nProperties = new HashMap<>();
+            for (Map.Entry<String, Map<String, String[]>> entry : this.i18nProperties.entrySet()) {
+                i18nProperties.put(entry.getKey(), copy(entry.getValue()));
+            }
+            data.setI18nProperties(i18nProperties);
+            return data;
+        }
+    }
+
+    /**
+     * Copy of a node type declared in a CND file : its own data, the names of its declared super types and its
+     * declared items.
+     */
+    public static final class CndNodeType {
+
+        private final CndItem data;
+        private final List<String> supertypeNames;
+        private final List<String> itemNames;
+        private final Map<String, CndItem> items;
+
+        CndNodeType(ExtendedNodeType nodeType) {
+            String name = nodeType.getName();
+            this.data = new CndItem(ModulesDataSource.getNodeTypeData(name, nodeType));
+            this.supertypeNames = Collections.unmodifiableList(Arrays.asList(nodeType.getDeclaredSupertypeNames()));
+
+            List<String> itemNames = new ArrayList<>();
+            Map<String, CndItem> items = new HashMap<>();
+            Set<String> propertyNames = new HashSet<>();
+            for (ExtendedItemDefinition itemDefinition : nodeType.getDeclaredItems(true)) {
+                String itemName = itemDefinition.isUnstructured() ? ModulesDataSource.computeUnstructuredItemName(itemDefinition) : itemDefinition.getName();
+                itemNames.add(itemName);
+                String itemPath = name + "/" + itemName;
+                if (itemDefinition instanceof ExtendedPropertyDefinition) {
+                    items.put(itemName, new CndItem(ModulesDataSource.getPropertyDefinitionData(itemPath,
+                            (ExtendedPropertyDefinition) itemDefinition, itemDefinition.isUnstructured())));
+                    propertyNames.add(itemName);
+                } else if (!propertyNames.contains(itemName)) {
+                    // a property definition hides a child node definition with the same name
+                    items.put(itemName, new CndItem(ModulesDataSource.getChildNodeDefinitionData(itemPath,
+                            (ExtendedNodeDefinition) itemDefinition, itemDefinition.isUnstructured())));
+                }
+            }
+            this.itemNames = Collections.unmodifiableList(itemNames);
+            this.items = Collections.unmodifiableMap(items);
+        }
+
+        public CndItem getData() {
+            return data;
+        }
+
+        /**
+         * @return the names of the declared super types and mixins
+         */
+        public List<String> getSupertypeNames() {
+            return supertypeNames;
+        }
+
+        /**
+         * @return the names of the declared items, unstructured items being named as in the modules tree
+         */
+        public List<String> getItemNames() {
+            return itemNames;
+        }
+
+        /**
+         * @return the property or child node definition with this name, or <code>null</code>
+         */
+        public CndItem getItem(String itemName) {
+            return items.get(itemName);
+        }
+    }
+
+    /**
+     * Node types of one CND file, with the node types of the file referencing each node type.
+     */
+    public static final class CndFile {
+
+        private final long lastModified;
+        private final byte[] digest;
+        private final List<String> nodeTypeNames;
+        private final Map<String, CndNodeType> nodeTypes;
+        private final Map<String, Set<String>> references;
+
+        CndFile(NodeTypeRegistry registry, String systemId, long lastModified, byte[] digest) {
+            this.lastModified = lastModified;
+            this.digest = digest;
+            List<String> nodeTypeNames = new ArrayList<>();
+            Map<String, CndNodeType> nodeTypes = new HashMap<>();
+            Map<String, Set<String>> references = new HashMap<>();
+
+            NodeTypeIterator it = registry.getNodeTypes(systemId);
+            while (it.hasNext()) {
+                ExtendedNodeType nodeType = (ExtendedNodeType) it.nextNodeType();
+                String name = nodeType.getName();
+                CndNodeType cndNodeType = new CndNodeType(nodeType);
+                nodeTypeNames.add(name);
+                nodeTypes.put(name, cndNodeType);
+
+                for (String supertypeName : cndNodeType.getSupertypeNames()) {
+                    addReference(references, supertypeName, name);
+                }
+                for (ExtendedNodeDefinition childNodeDefinition : nodeType.getChildNodeDefinitions()) {
+                    addChildNodeReferences(references, childNodeDefinition, name);
+                }
+                for (ExtendedNodeDefinition childNodeDefinition : nodeType.getUnstructuredChildNodeDefinitions().values()) {
+                    addChildNodeReferences(references, childNodeDefinition, name);
+                }
+            }
+
+            for (Map.Entry<String, Set<String>> entry : references.entrySet()) {
+                entry.setValue(Collections.unmodifiableSet(entry.getValue()));
+            }
+            this.nodeTypeNames = Collections.unmodifiableList(nodeTypeNames);
+            this.nodeTypes = Collections.unmodifiableMap(nodeTypes);
+            this.references = Collections.unmodifiableMap(references);
+        }
+
+        private static void addChildNodeReferences(Map<String, Set<String>> references, ExtendedNodeDefinition childNodeDefinition, String name) {
+            for (String requiredPrimaryTypeName : childNodeDefinition.getRequiredPrimaryTypeNames()) {
+                addReference(references, requiredPrimaryTypeName, name);
+            }
+            if (childNodeDefinition.getDefaultPrimaryTypeName() != null) {
+                addReference(references, childNodeDefinition.getDefaultPrimaryTypeName(), name);
+            }
+        }
+
+        private static void addReference(Map<String, Set<String>> references, String referencedType, String referencingType) {
+            Set<String> referencingTypes = references.get(referencedType);
+            if (referencingTypes == null) {
+                referencingTypes = new LinkedHashSet<>();
+                references.put(referencedType, referencingTypes);
+            }
+            referencingTypes.add(referencingType);
+        }
+
+        /**
+         * @return the last modification date of the file when it was indexed
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return the names of the node types declared in the file, in the file order
+         */
+        public List<String> getNodeTypeNames() {
+            return nodeTypeNames;
+        }
+
+        public CndNodeType getNodeType(String name) throws NoSuchNodeTypeException {
+            CndNodeType nodeType = nodeTypes.get(name);
+            if (nodeType == null) {
+                throw new NoSuchNodeTypeException(name);
+            }
+            return nodeType;
+        }
+
+        /**
+         * @return the names of the items declared by the node type, unstructured items being named as in the modules
+         * tree, or <code>null</code> if the node type is not declared in this file
+         */
+        public List<String> getItemNames(String nodeTypeName) {
+            CndNodeType nodeType = nodeTypes.get(nodeTypeName);
+            return nodeType != null ? nodeType.getItemNames() : null;
+        }
+
+        /**
+         * @return the property or child node definition declared by the node type with this name, or <code>null</code>
+         */
+        public CndItem getItem(String nodeTypeName, String itemName) {
+            CndNodeType nodeType = nodeTypes.get(nodeTypeName);
+            return nodeType != null ? nodeType.getItem(itemName) : null;
+        }
+
+        /**
+         * @return the node types of the file using this node type as super type or as child node type, including the
+         * node type itself if it can contain itself
+         */
+        public Set<String> getReferencingTypes(String nodeTypeName) {
+            Set<String> referencingTypes = references.get(nodeTypeName);
+            return referencingTypes != null ? referencingTypes : Collections.<String>emptySet();
+        }
+    }
+
+    private volatile Map<String, CndFile> files = Collections.emptyMap();
+
+    /**
+     * @return the indexed content of the file, or <code>null</code> if the file is not indexed
+     */
+    public CndFile get(String cndPath) {
+        return files.get(cndPath);
+    }
+
+    /**
+     * Indexes the node types of the module found in the registry, for the current content of the specified file.
+     */
+    public CndFile put(String cndPath, NodeTypeRegistry registry, String systemId, File file) {
+        return put(cndPath, registry, systemId, file.lastModified(), digest(file));
+    }
+
+    /**
+     * Indexes the node types of the module found in the registry, for a file with the specified modification date and
+     * content digest, as computed by {@link #newDigest()}.
+     */
+    public synchronized CndFile put(String cndPath, NodeTypeRegistry registry, String systemId, long lastModified, byte[] digest) {
+        CndFile cndFile = new CndFile(registry, systemId, lastModified, digest);
+        Map<String, CndFile> newFiles = new HashMap<>(files);
+        newFiles.put(cndPath, cndFile);
+        files = Collections.unmodifiableMap(newFiles);
+        return cndFile;
+    }
+
+    /**
+     * @return <code>true</code> if the file is indexed with its current content, which is the case when the change has
+     * been written by the data source itself
+     */
+    public boolean isIndexed(String cndPath, File file) {
+        CndFile cndFile = files.get(cndPath);
+        return cndFile != null && cndFile.digest != null && Arrays.equals(cndFile.digest, digest(file));
+    }
+
+    public synchronized void remove(String cndPath) {
+        if (files.containsKey(cndPath)) {
+            Map<String, CndFile> newFiles = new HashMap<>(files);
+            newFiles.remove(cndPath);
+            files = Collections.unmodifiableMap(newFiles);
+        }
+    }
+
+    public synchronized void clear() {
+        files = Collections.emptyMap();
+    }
+
+    /**
+     * @return a new digest for the content of a definitions file
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the digest of the content of the file, or <code>null</code> if it cannot be read
+     */
+    static byte[] digest(File file) {
+        try {
+            return newDigest().digest(Files.readAllBytes(file.toPath()));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -108,6 +108,8 @@ import javax.jcr.query.qom.QueryObjectModelConstants;
 import javax.jcr.version.OnParentVersionAction;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.*;
 
 /**
@@ -202,6 +204,7 @@ public class ModulesDataSource extends VFSDataSource implements ExternalDataSour
 
     private Map<String, NodeTypeRegistry> nodeTypeRegistryMap = new HashMap<>();
     private Map<NodeTypeRegistry, Map<String,String>> namespaceDefinitions = new HashMap<>();
+    private final CndIndex cndIndex = new CndIndex();
 
     private String fileMonitorJobName;
 
@@ -275,6 +278,8 @@ public class ModulesDataSource extends VFSDataSource implements ExternalDataSour
                         for (NodeTypeRegistry registry : nodeTypeRegistryMap.values()) {
                             registry.flushLabels();
                         }
+                        // the index holds the labels of the definitions
+                        cndIndex.clear();
                         nodeTypeLabelsFlushed = true;
                         try {
                             JCRTemplate.getInstance().doExecuteWithSystemSession(new JCRCallback<Object>() {
@@ -307,6 +312,7 @@ public class ModulesDataSource extends VFSDataSource implements ExternalDataSour
                             logger.error(e.getMessage(), e);
                         }
                     } else if (StringUtils.equals(type, JNT_DEFINITION_FILE)) {
+                        reindexCndFile("/" + StringUtils.replace(StringUtils.substringAfter(file.getPath(), fullFolderPath), File.separator, "/"), file);
                         try {
                             registerCndFiles(file);
                         } catch (IOException | ParseException | RepositoryException e) {
@@ -431,6 +437,7 @@ public class ModulesDataSource extends VFSDataSource implements ExternalDataSour
         if (fileMonitorJobName != null) {
             FileMonitorJob.unschedule(fileMonitorJobName);
         }
+        cndIndex.clear();
     }
 
     /**
@@ -881,22 +888,31 @@ public class ModulesDataSource extends VFSDataSource implements ExternalDataSour
     }
 
     private void checkCndItemUsage(String path, String message) throws RepositoryException {
-        try {
-            ExternalData item = getCndItemByPath(path);
-            if (!NODETYPES_TYPES.contains(item.getType())) {
-                item = getCndItemByPath(StringUtils.substringBeforeLast(path, "/"));
-                if ("modulesDataSource.errors.delete".equals(message)
-                        || "modulesDataSource.errors.move".equals(message)) {
-                    message += ".property";
-                }
+        String pathLowerCase = path.toLowerCase();
+        String[] splitPath = StringUtils.split(getSubPath(path, pathLowerCase), "/");
+        if (splitPath.length == 0 || splitPath.length > 2) {
+            throw new PathNotFoundException("Failed to get node " + path);
+        }
+        final String type = splitPath[0].replace('-', '_');
+        CndIndex.CndFile cndFile = getCndFile(getCndPath(path, pathLowerCase));
+        if (splitPath.length == 1) {
+            try {
+                cndFile.getNodeType(type);
+            } catch (NoSuchNodeTypeException e) {
+                return;
+            }
+        } else {
+            if (cndFile.getItem(type, splitPath[1]) == null) {
+                throw new PathNotFoundException("Failed to get node " + path);
+            }
+            if ("modulesDataSource.errors.delete".equals(message)
+                    || "modulesDataSource.errors.move".equals(message)) {
+                message += ".property";
             }
-            final String type = StringUtils.substringAfterLast(item.getPath(), "/");
-            // Check for usage of the nodetype before moving it
-            checkCndItemUsageByWorkspace(type, "default", message);
-            checkCndItemUsageByWorkspace(type, "live", message);
-        } catch (NoSuchNodeTypeException e) {
-            // do nothing
         }
+        // Check for usage of the nodetype before moving it
+        checkCndItemUsageByWorkspace(type, "default", message);
+        checkCndItemUsageByWorkspace(type, "live", message);
     }
 
     private void checkCndItemUsageByWorkspace(final String type, final String workspace, final String message) throws RepositoryException {
@@ -1010,7 +1026,7 @@ public class ModulesDataSource extends VFSDataSource implements ExternalDataSour
 
             // find node types, where the current one is used in child nodes
             Map<ExtendedNodeType, Set<ExtendedNodeDefinition>> containingNodeTypes = getContainingNodeTypes(nodeType,
-                    oldNodeTypeRegistry);
+                    oldNodeTypeRegistry, oldCndPath);
             // remove the node type from the super type of child nodes
             for (Set<ExtendedNodeDefinition> children : containingNodeTypes.values()) {
                 for (ExtendedNodeDefinition child : children) {
@@ -1079,14 +1095,13 @@ public class ModulesDataSource extends VFSDataSource implements ExternalDataSour
         return declaredSubtypes;
     }
 
-    private Map<ExtendedNodeType, Set<ExtendedNodeDefinition>> getContainingNodeTypes(ExtendedNodeType nodeType, NodeTypeRegistry ntRegistry) {
+    private Map<ExtendedNodeType, Set<ExtendedNodeDefinition>> getContainingNodeTypes(ExtendedNodeType nodeType, NodeTypeRegistry ntRegistry,
+            String cndPath) throws RepositoryException {
         Map<ExtendedNodeType, Set<ExtendedNodeDefinition>> containingTypes = new LinkedHashMap<ExtendedNodeType, Set<ExtendedNodeDefinition>>();
-        String moduleId = module.getId();
         String thisNodeTypeName = nodeType.getName();
-        for (ExtendedNodeType containingType : ntRegistry.getAllNodeTypes()) {
-            if (!moduleId.equals(containingType.getSystemId())) {
-                continue;
-            }
+        // only the types referencing this one in the same file can contain it
+        for (String containingTypeName : getCndFile(cndPath).getReferencingTypes(thisNodeTypeName)) {
+            ExtendedNodeType containingType = ntRegistry.getNodeType(containingTypeName);
             for (ExtendedNodeDefinition ntd : containingType.getChildNodeDefinitions()) {
                 if (ArrayUtils.contains(ntd.getRequiredPrimaryTypeNames(), thisNodeTypeName)) {
                     Set<ExtendedNodeDefinition> children = containingTypes.get(containingType);
@@ -1183,7 +1198,7 @@ public class ModulesDataSource extends VFSDataSource implements ExternalDataSour
         writeDefinitionFile(ntr, cndPath);
     }
 
-    private String computeUnstructuredItemName(ExtendedItemDefinition o1) {
+    static String computeUnstructuredItemName(ExtendedItemDefinition o1) {
         StringBuilder s1 = new StringBuilder();
         if (o1.isNode()) {
             s1.append(UNSTRUCTURED_CHILD_NODE);
@@ -1820,12 +1835,7 @@ public class ModulesDataSource extends VFSDataSource implements ExternalDataSour
 
     private List<String> getCndChildrenNames(String path, String pathLowerCase) throws RepositoryException {
         if (pathLowerCase.endsWith(CND)) {
-            List<String> children = new ArrayList<String>();
-            NodeTypeIterator nodeTypes = loadRegistry(path).getNodeTypes(module.getId());
-            while (nodeTypes.hasNext()) {
-                children.add(nodeTypes.nextNodeType().getName());
-            }
-            return children;
+            return new ArrayList<String>(getCndFile(path).getNodeTypeNames());
         } else {
             String cndPath = getCndPath(path, pathLowerCase);
             String subPath = getSubPath(path, pathLowerCase);
@@ -1836,18 +1846,11 @@ public class ModulesDataSource extends VFSDataSource implements ExternalDataSour
             if (splitPath.length == 1) {
                 String nodeTypeName = splitPath[0];
                 nodeTypeName = nodeTypeName.replace('-', '_');
-                try {
-                    ExtendedNodeType nodeType = loadRegistry(cndPath).getNodeType(nodeTypeName);
-                    for (ExtendedItemDefinition itemDefinition : nodeType.getDeclaredItems(true)) {
-                        if (itemDefinition.isUnstructured()) {
-                            children.add(computeUnstructuredItemName(itemDefinition));
-                        } else {
-                            children.add(itemDefinition.getName());
-                        }
-                    }
-                } catch (NoSuchNodeTypeException e) {
-                    // Ignore non-existing nodetype, no children
+                List<String> itemNames = getCndFile(cndPath).getItemNames(nodeTypeName);
+                if (itemNames != null) {
+                    children.addAll(itemNames);
                 }
+                // Ignore non-existing nodetype, no children
             }
             return children;
         }
@@ -1861,42 +1864,26 @@ public class ModulesDataSource extends VFSDataSource implements ExternalDataSour
         if (splitPath.length == 1) {
             String nodeTypeName = splitPath[0];
             nodeTypeName = nodeTypeName.replace('-', '_');
-            ExtendedNodeType nodeType = loadRegistry(cndPath).getNodeType(nodeTypeName);
-            return getNodeTypeData(path, nodeType);
+            return getCndFile(cndPath).getNodeType(nodeTypeName).getData().toExternalData(path);
         } else if (splitPath.length == 2) {
             String nodeTypeName = splitPath[0];
             nodeTypeName = nodeTypeName.replace('-', '_');
             String itemDefinitionName = splitPath[1];
+            CndIndex.CndFile cndFile = getCndFile(cndPath);
             try {
-                ExtendedNodeType nodeType = loadRegistry(cndPath).getNodeType(nodeTypeName);
-                Map<String, ExtendedPropertyDefinition> propertyDefinitionsAsMap = nodeType.getDeclaredPropertyDefinitionsAsMap();
-                if (propertyDefinitionsAsMap.containsKey(itemDefinitionName)) {
-                    return getPropertyDefinitionData(path, propertyDefinitionsAsMap.get(itemDefinitionName), false);
-                }
-                if (itemDefinitionName.startsWith(UNSTRUCTURED_PROPERTY)) {
-                    Integer type = Integer.valueOf(itemDefinitionName.substring(UNSTRUCTURED_PROPERTY.length()));
-                    if (nodeType.getDeclaredUnstructuredPropertyDefinitions().get(type) != null) {
-                        return getPropertyDefinitionData(path, nodeType.getDeclaredUnstructuredPropertyDefinitions().get(type), true);
-                    }
-                }
-                Map<String, ExtendedNodeDefinition> childNodeDefinitionsAsMap = nodeType.getDeclaredChildNodeDefinitionsAsMap();
-                if (childNodeDefinitionsAsMap.containsKey(itemDefinitionName)) {
-                    return getChildNodeDefinitionData(path, childNodeDefinitionsAsMap.get(itemDefinitionName), false);
-                }
-                if (itemDefinitionName.startsWith(UNSTRUCTURED_CHILD_NODE)) {
-                    String type = StringUtils.replace(itemDefinitionName.substring(UNSTRUCTURED_CHILD_NODE.length()).trim(), "@@", ":");
-                    if (nodeType.getDeclaredUnstructuredChildNodeDefinitions().get(type) != null) {
-                        return getChildNodeDefinitionData(path, nodeType.getDeclaredUnstructuredChildNodeDefinitions().get(type), true);
-                    }
-                }
+                cndFile.getNodeType(nodeTypeName);
             } catch (NoSuchNodeTypeException e) {
                 throw new PathNotFoundException("Failed to get node type " + nodeTypeName, e);
             }
+            CndIndex.CndItem item = cndFile.getItem(nodeTypeName, itemDefinitionName);
+            if (item != null) {
+                return item.toExternalData(path);
+            }
         }
         throw new PathNotFoundException("Failed to get node " + path);
     }
 
-    private ExternalData getNodeTypeData(String path, ExtendedNodeType nodeType) {
+    static ExternalData getNodeTypeData(String path, ExtendedNodeType nodeType) {
         Map<String, String[]> properties = new HashMap<String, String[]>();
         ExtendedNodeType[] declaredSupertypes = nodeType.getDeclaredSupertypes();
         String supertype = null;
@@ -1949,7 +1936,7 @@ public class ModulesDataSource extends VFSDataSource implements ExternalDataSour
         return externalData;
     }
 
-    private ExternalData getPropertyDefinitionData(String path, ExtendedPropertyDefinition propertyDefinition, boolean unstructured) {
+    static ExternalData getPropertyDefinitionData(String path, ExtendedPropertyDefinition propertyDefinition, boolean unstructured) {
         Map<String, String[]> properties = new HashMap<String, String[]>();
         properties.put(J_AUTO_CREATED, new String[]{String.valueOf(propertyDefinition.isAutoCreated())});
         properties.put(J_MANDATORY, new String[]{String.valueOf(propertyDefinition.isMandatory())});
@@ -2041,7 +2028,7 @@ public class ModulesDataSource extends VFSDataSource implements ExternalDataSour
         return externalData;
     }
 
-    private ExternalData getChildNodeDefinitionData(String path, ExtendedNodeDefinition nodeDefinition, boolean unstructured) {
+    static ExternalData getChildNodeDefinitionData(String path, ExtendedNodeDefinition nodeDefinition, boolean unstructured) {
         Map<String, String[]> properties = new HashMap<String, String[]>();
         properties.put(J_AUTO_CREATED, new String[]{String.valueOf(nodeDefinition.isAutoCreated())});
         properties.put(J_MANDATORY, new String[]{String.valueOf(nodeDefinition.isMandatory())});
@@ -2102,6 +2089,58 @@ public class ModulesDataSource extends VFSDataSource implements ExternalDataSour
     private void removeNodeTypeRegistry(String newCndPath) {
         NodeTypeRegistry nodeTypeRegistry = nodeTypeRegistryMap.remove(newCndPath);
         namespaceDefinitions.remove(nodeTypeRegistry);
+        cndIndex.remove(newCndPath);
+    }
+
+    /**
+     * Get the indexed node types and item definitions of one specific file. The index is read without locking, the
+     * registry of the file is only loaded if the file has not been indexed yet.
+     *
+     * @param cndPath
+     * @return
+     * @throws RepositoryException
+     */
+    private CndIndex.CndFile getCndFile(String cndPath) throws RepositoryException {
+        CndIndex.CndFile cndFile = cndIndex.get(cndPath);
+        return cndFile != null ? cndFile : indexCndFile(cndPath);
+    }
+
+    private synchronized CndIndex.CndFile indexCndFile(String cndPath) throws RepositoryException {
+        CndIndex.CndFile cndFile = cndIndex.get(cndPath);
+        if (cndFile != null) {
+            return cndFile;
+        }
+        NodeTypeRegistry ntr = loadRegistry(cndPath);
+        if (nodeTypeRegistryMap.get(cndPath) != ntr) {
+            // the file does not exist, do not keep it in the index
+            return new CndIndex.CndFile(ntr, module.getId(), 0, null);
+        }
+        try {
+            return cndIndex.put(cndPath, ntr, module.getId(), getRealFile(cndPath));
+        } catch (FileSystemException e) {
+            throw new RepositoryException("Failed to index definitions file " + cndPath, e);
+        }
+    }
+
+    /**
+     * Drop the registry and the index of a definitions file changed outside of the data source, and index it again.
+     * Changes done by {@link #writeDefinitionFile(NodeTypeRegistry, String)} are already indexed and are skipped.
+     */
+    private synchronized void reindexCndFile(String cndPath, File file) {
+        if (cndIndex.get(cndPath) == null && !nodeTypeRegistryMap.containsKey(cndPath)) {
+            return;
+        }
+        if (file.exists() && cndIndex.isIndexed(cndPath, file)) {
+            return;
+        }
+        removeNodeTypeRegistry(cndPath);
+        if (file.exists()) {
+            try {
+                indexCndFile(cndPath);
+            } catch (RepositoryException e) {
+                logger.error("Failed to index definitions file " + cndPath, e);
+            }
+        }
     }
 
     /**
@@ -2135,8 +2174,10 @@ public class ModulesDataSource extends VFSDataSource implements ExternalDataSour
     private synchronized void writeDefinitionFile(NodeTypeRegistry nodeTypeRegistry, String path) throws RepositoryException {
         try {
             Writer writer = null;
+            // digest of the written content, to recognize this change when the file monitor reports it
+            MessageDigest digest = CndIndex.newDigest();
             try {
-                writer = new OutputStreamWriter(new FileOutputStream(getRealFile(path)), "UTF-8");
+                writer = new OutputStreamWriter(new DigestOutputStream(new FileOutputStream(getRealFile(path)), digest), "UTF-8");
                 Map<String, String> namespaces = NodeTypeRegistry.getInstance().getNamespaces();
                 if (nodeTypeRegistryMap.containsKey(path)) {
                     nodeTypeRegistryMap.get(path).flushLabels();
@@ -2163,6 +2204,12 @@ public class ModulesDataSource extends VFSDataSource implements ExternalDataSour
                 IOUtils.closeQuietly(writer);
             }
 
+            if (nodeTypeRegistryMap.get(path) == nodeTypeRegistry) {
+                cndIndex.put(path, nodeTypeRegistry, module.getId(), getRealFile(path).lastModified(), digest.digest());
+            } else {
+                cndIndex.remove(path);
+            }
+
             try {
                 registerCndFiles(getRealFile(path));
             } catch (FileSystemException e) {
@@ -0,0 +1,223 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.test.acl;
+
+import org.jahia.modules.external.ExternalPermissionCache;
+import org.jahia.modules.external.ExternalRepositoryImpl;
+import org.jahia.registries.ServicesRegistry;
+import org.jahia.services.content.JCRCallback;
+import org.jahia.services.content.JCRNodeWrapper;
+import org.jahia.services.content.JCRSessionFactory;
+import org.jahia.services.content.JCRSessionWrapper;
+import org.jahia.services.content.JCRTemplate;
+import org.jahia.services.content.decorator.JCRUserNode;
+import org.jahia.services.usermanager.JahiaUserManagerService;
+import org.junit.*;
+
+import javax.jcr.PathNotFoundException;
+import javax.jcr.RepositoryException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the access control decisions shared by the sessions of a provider.
+ */
+public class PermissionCacheTest {
+
+    private static final String PROVIDER_KEY = "ExternalPermissionCacheMappedDatabaseProvider";
+    private static final String MOUNTPOINT = "/external-database-mapped-permission-cache";
+    private static final String AIRLINES_PATH = MOUNTPOINT + "/AIRLINES";
+
+    private static JCRUserNode user1;
+    private static JCRUserNode user2;
+
+    private JCRSessionWrapper session;
+    private ExternalPermissionCache permissionCache;
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception {
+        JCRSessionWrapper session = JCRSessionFactory.getInstance().getCurrentUserSession();
+        JahiaUserManagerService userManager = ServicesRegistry.getInstance().getJahiaUserManagerService();
+        user1 = userManager.createUser("permissionCacheUser1", "password", new Properties(), session);
+        user2 = userManager.createUser("permissionCacheUser2", "password", new Properties(), session);
+        session.save();
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown() throws Exception {
+        JCRSessionWrapper session = JCRSessionFactory.getInstance().getCurrentUserSession();
+        JahiaUserManagerService userManager = ServicesRegistry.getInstance().getJahiaUserManagerService();
+        userManager.deleteUser(user1.getPath(), session);
+        userManager.deleteUser(user2.getPath(), session);
+        session.save();
+        JCRSessionFactory.getInstance().closeAllSessions();
+    }
+
+    @Before
+    public void setUp() throws RepositoryException {
+        session = JCRSessionFactory.getInstance().getCurrentUserSession();
+        permissionCache = ((ExternalRepositoryImpl) JCRSessionFactory.getInstance().getProviders().get(PROVIDER_KEY).getRepository()).getPermissionCache();
+        assertTrue(permissionCache.isEnabled());
+        permissionCache.invalidateAll();
+    }
+
+    @After
+    public void tearDown() throws RepositoryException {
+        session.getNode(AIRLINES_PATH).revokeAllRoles();
+        session.save();
+        JCRSessionFactory.getInstance().closeAllSessions();
+    }
+
+    private static boolean hasPermission(JCRUserNode user, String path, String permission) throws RepositoryException {
+        return JCRTemplate.getInstance().doExecute(user.getName(), null, null, null, new CheckPermission(path, permission));
+    }
+
+    @Test
+    public void testCacheHit() throws Exception {
+        assertFalse(hasPermission(user1, AIRLINES_PATH, "jcr:write"));
+        long size = permissionCache.getSize();
+        assertTrue("Decision not cached", size > 0);
+        long hits = permissionCache.getStats().hitCount();
+
+        // a new session of the same user reuses the decisions
+        assertFalse(hasPermission(user1, AIRLINES_PATH, "jcr:write"));
+        assertTrue("Decision not read from the cache", permissionCache.getStats().hitCount() > hits);
+        assertEquals(size, permissionCache.getSize());
+    }
+
+    @Test
+    public void testInvalidationOnAclSave() throws Exception {
+        assertFalse(hasPermission(user1, AIRLINES_PATH, "jcr:write"));
+        assertTrue(permissionCache.getSize() > 0);
+
+        session.getNode(AIRLINES_PATH).grantRoles("u:" + user1.getName(), Collections.singleton("owner"));
+        session.save();
+        assertEquals("Decisions not invalidated when saving an ACL", 0, permissionCache.getSize());
+        assertTrue(hasPermission(user1, AIRLINES_PATH, "jcr:write"));
+
+        session.getNode(AIRLINES_PATH).revokeAllRoles();
+        session.save();
+        assertFalse(hasPermission(user1, AIRLINES_PATH, "jcr:write"));
+    }
+
+    @Test
+    public void testPrincipalsAreSeparated() throws Exception {
+        session.getNode(AIRLINES_PATH).grantRoles("u:" + user1.getName(), Collections.singleton("owner"));
+        session.save();
+
+        assertTrue(hasPermission(user1, AIRLINES_PATH, "jcr:write"));
+        // the decision of the first user is not returned to the second one
+        assertFalse(hasPermission(user2, AIRLINES_PATH, "jcr:write"));
+        assertTrue(hasPermission(user1, AIRLINES_PATH, "jcr:write"));
+        assertFalse(hasPermission(user2, AIRLINES_PATH, "jcr:write"));
+    }
+
+    @Test
+    public void testDecisionKeys() {
+        ExternalPermissionCache cache = new ExternalPermissionCache(100, 3600);
+        cache.put("default", "user/realm1", "/a", "jcr:read_default", true);
+
+        assertEquals(Boolean.TRUE, cache.get("default", "user/realm1", "/a", "jcr:read_default"));
+        assertEquals(1, cache.getStats().hitCount());
+        // same user name in another realm, other principal, workspace, path or privileges
+        assertNull(cache.get("default", "user/realm2", "/a", "jcr:read_default"));
+        assertNull(cache.get("default", "user/null", "/a", "jcr:read_default"));
+        assertNull(cache.get("default", "other/realm1", "/a", "jcr:read_default"));
+        assertNull(cache.get("live", "user/realm1", "/a", "jcr:read_default"));
+        assertNull(cache.get("default", "user/realm1", "/a/b", "jcr:read_default"));
+        assertNull(cache.get("default", "user/realm1", "/a", "jcr:write_default"));
+        assertEquals(6, cache.getStats().missCount());
+    }
+
+    @Test
+    public void testInvalidateDescendants() {
+        ExternalPermissionCache cache = new ExternalPermissionCache(100, 3600);
+        for (String path : Arrays.asList("/a", "/a/b", "/a/b/c", "/ab", "/d")) {
+            cache.put("default", "user/realm", path, "jcr:read_default", true);
+        }
+
+        cache.invalidate("/a/b");
+        assertNotNull(cache.get("default", "user/realm", "/a", "jcr:read_default"));
+        assertNull(cache.get("default", "user/realm", "/a/b", "jcr:read_default"));
+        assertNull(cache.get("default", "user/realm", "/a/b/c", "jcr:read_default"));
+
+        cache.invalidate("/a");
+        assertNull(cache.get("default", "user/realm", "/a", "jcr:read_default"));
+        assertNotNull("Sibling with the same prefix invalidated", cache.get("default", "user/realm", "/ab", "jcr:read_default"));
+
+        cache.invalidate("/");
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testDisabledCache() {
+        ExternalPermissionCache cache = new ExternalPermissionCache(0, 3600);
+        assertFalse(cache.isEnabled());
+        cache.put("default", "user/realm", "/a", "jcr:read_default", true);
+        assertNull(cache.get("default", "user/realm", "/a", "jcr:read_default"));
+        assertEquals(0, cache.getSize());
+    }
+
+    private static class CheckPermission implements JCRCallback<Boolean> {
+        private final String path;
+        private final String permission;
+
+        CheckPermission(String path, String permission) {
+            this.path = path;
+            this.permission = permission;
+        }
+
+        @Override
+        public Boolean doInJCR(JCRSessionWrapper session) throws RepositoryException {
+            try {
+                return session.getNode(path).hasPermission(permission);
+            } catch (PathNotFoundException e) {
+                return false;
+            }
+        }
+    }
+}
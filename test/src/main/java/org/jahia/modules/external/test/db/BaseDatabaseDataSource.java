@@ -304,6 +304,73 @@ abstract class BaseDatabaseDataSource implements ExternalDataSource, Initializab
         }
     }
 
+    /**
+     * Returns a page of row IDs (names) in the specified table, ordered by primary key so that the pages do not overlap.
+     * 
+     * @param tableName
+     *            the name of the table to read rows from
+     * @param offset
+     *            the index of the first row to return
+     * @param limit
+     *            the maximum number of rows to return
+     * @return a list of row IDs (names) in the specified page
+     */
+    protected final List<String> getRowIDs(String tableName, long offset, int limit) {
+        List<String> ids = new LinkedList<String>();
+        Connection conn = null;
+        Statement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = getConnection();
+            List<String> primaryKeys = getTablePrimaryKeys(tableName, conn);
+            boolean hasPrimaryKeys = !primaryKeys.isEmpty();
+            stmt = conn.createStatement();
+            rs = stmt.executeQuery("select * from " + tableName
+                    + (hasPrimaryKeys ? " order by " + StringUtils.join(primaryKeys, ", ") : "")
+                    + " offset " + offset + " rows fetch next " + limit + " rows only");
+            long position = offset;
+            while (rs.next()) {
+                position++;
+                String rowID = hasPrimaryKeys ? getRowID(rs, primaryKeys) : String.valueOf(position);
+                if (rowID != null) {
+                    ids.add(rowID);
+                }
+            }
+            return ids;
+        } catch (SQLException e) {
+            logger.debug(e.getMessage(), e);
+            return Collections.emptyList();
+        } finally {
+            DbUtility.close(conn, stmt, rs);
+        }
+    }
+
+    /**
+     * Returns the number of rows in the specified table.
+     * 
+     * @param tableName
+     *            the name of the table to count rows in
+     * @return the number of rows in the specified table or -1 if it cannot be read
+     */
+    protected final long getRowCount(String tableName) {
+        Connection conn = null;
+        Statement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = getConnection();
+            stmt = conn.createStatement();
+            rs = stmt.executeQuery("select count(*) from " + tableName);
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            logger.debug(e.getMessage(), e);
+            return -1;
+        } finally {
+            DbUtility.close(conn, stmt, rs);
+        }
+    }
+
     /**
      * Returns the node type name of rows in the specified table.
      * 
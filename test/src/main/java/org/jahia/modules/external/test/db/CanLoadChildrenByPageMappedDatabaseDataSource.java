@@ -0,0 +1,121 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.test.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.jcr.PathNotFoundException;
+import javax.jcr.RepositoryException;
+
+import org.apache.commons.lang.StringUtils;
+import org.jahia.modules.external.ExternalData;
+import org.jahia.modules.external.ExternalDataSource;
+
+/**
+ * Mapped data source reading the rows of the tables page by page.
+ */
+public class CanLoadChildrenByPageMappedDatabaseDataSource extends MappedDatabaseDataSource implements ExternalDataSource.CanLoadChildrenByPage {
+
+    @Override
+    public ChildrenCursor openChildrenCursor(final String path) throws RepositoryException {
+        return new ChildrenCursor() {
+            private long offset = 0;
+
+            @Override
+            public List<ExternalData> nextPage(int limit) throws RepositoryException {
+                List<ExternalData> children = getChildrenNodes(path, offset, limit);
+                offset += children.size();
+                return children;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private List<ExternalData> getChildrenNodes(String path, long offset, int limit) throws RepositoryException {
+        String nodeType;
+        try {
+            nodeType = getNodeTypeName(path);
+        } catch (PathNotFoundException e) {
+            // cannot handle that path
+            return Collections.emptyList();
+        }
+        List<String> names;
+        if (nodeType.equals(getSchemaNodeType())) {
+            List<String> tables = getTableNames();
+            names = offset < tables.size() ? tables.subList((int) offset, (int) Math.min(offset + limit, tables.size()))
+                    : Collections.<String>emptyList();
+        } else if (nodeType.equals(getTableNodeType())) {
+            names = getRowIDs(StringUtils.substringAfterLast(path, "/"), offset, limit);
+        } else {
+            return Collections.emptyList();
+        }
+        String prefix = path.endsWith("/") ? path : path + "/";
+        List<ExternalData> children = new ArrayList<ExternalData>(names.size());
+        for (String name : names) {
+            children.add(getItemByPath(prefix + name));
+        }
+        return children;
+    }
+
+    @Override
+    public long getChildrenCount(String path) throws RepositoryException {
+        String nodeType;
+        try {
+            nodeType = getNodeTypeName(path);
+        } catch (PathNotFoundException e) {
+            return 0;
+        }
+        if (nodeType.equals(getSchemaNodeType())) {
+            return getTableNames().size();
+        } else if (nodeType.equals(getTableNodeType())) {
+            return getRowCount(StringUtils.substringAfterLast(path, "/"));
+        } else {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.test.db;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.jcr.PathNotFoundException;
+import javax.jcr.RepositoryException;
+
+import org.jahia.modules.external.ExternalData;
+import org.jahia.modules.external.ExternalDataSource;
+
+/**
+ * Mapped data source loading the lazy properties of several nodes at once, which records the calls it receives. The
+ * language of the cities is lazy as well, so that cities have two lazy properties.
+ */
+public class CanLoadPropertiesInBatchMappedDatabaseDataSource extends MappedDatabaseDataSource implements ExternalDataSource.CanLoadPropertiesInBatch {
+
+    private static final String LANGUAGE = "language";
+
+    private final List<String> propertyCalls = Collections.synchronizedList(new ArrayList<String>());
+
+    private final List<List<String>> batchCalls = Collections.synchronizedList(new ArrayList<List<String>>());
+
+    @Override
+    protected ExternalData getRowProperties(String path, String type, String table, ResultSet rs) throws SQLException,
+            PathNotFoundException {
+        ExternalData data = super.getRowProperties(path, type, table, rs);
+        if (DATA_TYPE_CITY.equals(type) && data.getProperties().remove(LANGUAGE) != null) {
+            data.getLazyProperties().add(LANGUAGE);
+        }
+        return data;
+    }
+
+    @Override
+    public String[] getPropertyValues(String path, String propertyName) throws PathNotFoundException {
+        propertyCalls.add(propertyName);
+        return super.getPropertyValues(path, propertyName);
+    }
+
+    @Override
+    public Map<String, Map<String, String[]>> getPropertiesValues(List<String> paths, Set<String> propertyNames) throws RepositoryException {
+        batchCalls.add(new ArrayList<String>(paths));
+        Map<String, Map<String, String[]>> values = new HashMap<String, Map<String, String[]>>();
+        for (String path : paths) {
+            Map<String, String[]> nodeValues = new HashMap<String, String[]>();
+            for (String propertyName : propertyNames) {
+                propertyCalls.add(propertyName);
+                nodeValues.put(propertyName, super.getPropertyValues(path, propertyName));
+            }
+            values.put(path, nodeValues);
+        }
+        return values;
+    }
+
+    /**
+     * @return the names of the properties read, once per node
+     */
+    public List<String> getPropertyCalls() {
+        return propertyCalls;
+    }
+
+    /**
+     * @return the paths of the nodes of each call to {@link #getPropertiesValues(List, Set)}
+     */
+    public List<List<String>> getBatchCalls() {
+        return batchCalls;
+    }
+
+    public void resetCalls() {
+        propertyCalls.clear();
+        batchCalls.clear();
+    }
+}
@@ -55,12 +55,20 @@ import javax.jcr.UnsupportedRepositoryOperationException;
 import javax.jcr.ValueFormatException;
 import javax.jcr.lock.Lock;
 import javax.jcr.lock.LockException;
+import javax.jcr.observation.Event;
 import javax.jcr.query.InvalidQueryException;
 import javax.jcr.query.Query;
 import javax.jcr.query.QueryResult;
 
 import com.google.common.collect.Sets;
 import org.jahia.api.Constants;
+import org.jahia.modules.external.ExternalContentStoreProvider;
+import org.jahia.modules.external.ExternalData;
+import org.jahia.modules.external.ExternalDataCache;
+import org.jahia.modules.external.ExternalRepositoryImpl;
+import org.jahia.modules.external.events.EventService;
+import org.jahia.modules.external.test.listener.ApiEventImplTest;
+import org.jahia.osgi.BundleUtils;
 import org.jahia.services.content.*;
 import org.jahia.services.sites.JahiaSite;
 import org.jahia.services.usermanager.JahiaUserManagerService;
@@ -90,6 +98,12 @@ public class ExternalDatabaseProviderTest extends JahiaTestCase {
 
     private final static String BATCH_CHILDREN_PROVIDER_MOUNTPOINT = "/external-database-mapped-batch-children";
 
+    private final static String PAGED_CHILDREN_PROVIDER_MOUNTPOINT = "/external-database-mapped-paged-children";
+
+    private final static String BATCH_PROPERTIES_PROVIDER_MOUNTPOINT = "/external-database-mapped-batch-properties";
+
+    private final static String CACHED_WRITEABLE_PROVIDER_MOUNTPOINT = "/external-writeable-database-mapped-cached";
+
     private final static String MAPPED_PROVIDER_MOUNTPOINT_NO_MIXIN = "/external-database-mapped-no-mixin";
 
     private final static String MAPPED_PROVIDER_MOUNTPOINT_NO_NAMED_MIXIN = "/external-database-mapped-no-named-mixin";
@@ -194,6 +208,12 @@ public class ExternalDatabaseProviderTest extends JahiaTestCase {
         assertTrue("Cannot find mounted provider at " + BATCH_CHILDREN_PROVIDER_MOUNTPOINT,
                 session.nodeExists(BATCH_CHILDREN_PROVIDER_MOUNTPOINT));
 
+        assertTrue("Cannot find mounted provider at " + PAGED_CHILDREN_PROVIDER_MOUNTPOINT,
+                session.nodeExists(PAGED_CHILDREN_PROVIDER_MOUNTPOINT));
+
+        assertTrue("Cannot find mounted provider at " + BATCH_PROPERTIES_PROVIDER_MOUNTPOINT,
+                session.nodeExists(BATCH_PROPERTIES_PROVIDER_MOUNTPOINT));
+
         assertTrue("Cannot find mounted provider at " + MAPPED_PROVIDER_MOUNTPOINT_NO_MIXIN,
                 session.nodeExists(MAPPED_PROVIDER_MOUNTPOINT_NO_MIXIN));
 
@@ -326,6 +346,37 @@ public class ExternalDatabaseProviderTest extends JahiaTestCase {
         assertEquals(root.getNode("CITIES").getNode("1"), session.getNode(mountpoint + "/CITIES/1"));
     }
 
+    @Test
+    public void testMappedNodesByPage() throws RepositoryException {
+        JCRNodeWrapper cities = session.getNode(PAGED_CHILDREN_PROVIDER_MOUNTPOINT + "/CITIES");
+
+        NodeIterator it = cities.getNodes();
+        long size = it.getSize();
+        assertTrue("Expected more cities than the page size", size > 10);
+        Set<String> names = new HashSet<>();
+        while (it.hasNext()) {
+            assertTrue("Duplicate child", names.add(it.nextNode().getName()));
+        }
+        assertEquals(size, names.size());
+        assertEquals(session.getNode(MAPPED_PROVIDER_MOUNTPOINT + "/CITIES").getNodes().getSize(), names.size());
+        assertEquals(session.getNode(PAGED_CHILDREN_PROVIDER_MOUNTPOINT + "/CITIES/1").getIdentifier(),
+                cities.getNodes("1").nextNode().getIdentifier());
+
+        // size is unknown when filtering, but the nodes are still iterated page by page
+        it = cities.getNodes("1*");
+        int count = 0;
+        while (it.hasNext()) {
+            assertTrue(it.nextNode().getName().startsWith("1"));
+            count++;
+        }
+        assertTrue(count > 0);
+        assertTrue(cities.hasNodes());
+
+        // the tables fit in one page
+        assertEquals(session.getNode(MAPPED_PROVIDER_MOUNTPOINT).getNodes().getSize(),
+                session.getNode(PAGED_CHILDREN_PROVIDER_MOUNTPOINT).getNodes().getSize());
+    }
+
     @Test
     public void testMappedProperties() throws RepositoryException {
         testMappedProperties(MAPPED_PROVIDER_MOUNTPOINT);
@@ -657,6 +708,34 @@ public class ExternalDatabaseProviderTest extends JahiaTestCase {
         frenchSession.logout();
     }
 
+    @Test
+    public void testLazyPropertiesInBatch() throws RepositoryException {
+        CanLoadPropertiesInBatchMappedDatabaseDataSource dataSource = (CanLoadPropertiesInBatchMappedDatabaseDataSource)
+                ((ExternalContentStoreProvider) session.getNode(BATCH_PROPERTIES_PROVIDER_MOUNTPOINT).getProvider()).getDataSource();
+        dataSource.resetCalls();
+
+        List<JCRNodeWrapper> cities = new ArrayList<>();
+        for (NodeIterator it = session.getNode(BATCH_PROPERTIES_PROVIDER_MOUNTPOINT + "/CITIES").getNodes(); it.hasNext(); ) {
+            cities.add((JCRNodeWrapper) it.nextNode());
+        }
+        assertTrue("Expected several cities", cities.size() > 2);
+        assertTrue("Lazy properties read while iterating", dataSource.getPropertyCalls().isEmpty());
+
+        for (JCRNodeWrapper city : cities) {
+            assertEquals(session.getNode(MAPPED_PROVIDER_MOUNTPOINT + "/CITIES/" + city.getName()).getPropertyAsString("airport"),
+                    city.getPropertyAsString("airport"));
+        }
+        // the first node is resolved alone, the next ones together
+        assertEquals("Airports not read in a single batch", 1, dataSource.getBatchCalls().size());
+        assertEquals(cities.size() - 1, dataSource.getBatchCalls().get(0).size());
+        assertEquals(Collections.nCopies(cities.size(), "airport"), dataSource.getPropertyCalls());
+
+        // the language was never accessed, it is read only now
+        dataSource.resetCalls();
+        assertNotNull(cities.get(1).getPropertyAsString("language"));
+        assertTrue(dataSource.getPropertyCalls().contains("language"));
+    }
+
     @Test
     public void testI18nAndLazyPropertiesForGuest() throws RepositoryException {
         JCRTemplate.getInstance().doExecute(JahiaUserManagerService.GUEST_USERNAME, null, Constants.LIVE_WORKSPACE, Locale.ENGLISH, new JCRCallback<Object>() {
@@ -767,6 +846,69 @@ public class ExternalDatabaseProviderTest extends JahiaTestCase {
 
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWritableDataCacheInvalidation() throws Exception {
+        ExternalContentStoreProvider provider = (ExternalContentStoreProvider) JCRSessionFactory.getInstance().getProviders().get("CachedWritableDatabaseDataSource");
+        ExternalDataCache dataCache = ((ExternalRepositoryImpl) provider.getRepository()).getDataCache();
+        assertNotNull("Data cache is not enabled", dataCache);
+        String workspace = session.getWorkspace().getName();
+        String path = CACHED_WRITEABLE_PROVIDER_MOUNTPOINT + "/AIRLINES/TC";
+
+        JCRNodeWrapper n = session.getNode(CACHED_WRITEABLE_PROVIDER_MOUNTPOINT + "/AIRLINES").addNode("TC", "jtestnt:airline");
+        n.setProperty("airline", "TC");
+        n.setProperty("airline_full", "test cache");
+        n.setProperty("basic_rate", "0.15");
+        n.setProperty("distance_discount", "0.01");
+        session.save();
+        try {
+            // save
+            reloadSession();
+            session.getNode(path);
+            assertNotNull(dataCache.getByPath(workspace, "/AIRLINES/TC"));
+            session.getNode(path).setProperty("basic_rate", "0.20");
+            session.save();
+            assertNull("Item not invalidated on save", dataCache.getByPath(workspace, "/AIRLINES/TC"));
+
+            // API event, for the source of a move
+            reloadSession();
+            assertEquals("0.20", session.getNode(path).getProperty("basic_rate").getString());
+            assertNotNull(dataCache.getByPath(workspace, "/AIRLINES/TC"));
+            ApiEventImplTest event = new ApiEventImplTest();
+            event.setType(Event.NODE_MOVED);
+            event.setPath("/AIRLINES/TD");
+            event.getInfo().put("srcAbsPath", "/AIRLINES/TC");
+            BundleUtils.getOsgiService(EventService.class, null).sendEvents(Collections.singleton(event), provider);
+            assertNull("Item not invalidated by API event", dataCache.getByPath(workspace, "/AIRLINES/TC"));
+
+            // data read before an invalidation is not stored
+            long generation = dataCache.getGeneration();
+            ExternalData staleData = new ExternalData("_AIRLINES_TC", "/AIRLINES/TC", "jtestnt:airline", new HashMap<String, String[]>());
+            dataCache.invalidate("/AIRLINES");
+            dataCache.put(workspace, staleData, generation);
+            assertNull("Stale item stored after invalidation", dataCache.getByPath(workspace, "/AIRLINES/TC"));
+
+            // remove
+            reloadSession();
+            n = session.getNode(path);
+            assertNotNull(dataCache.getByPath(workspace, "/AIRLINES/TC"));
+            n.remove();
+            session.save();
+            assertNull("Item not invalidated on remove", dataCache.getByPath(workspace, "/AIRLINES/TC"));
+        } finally {
+            reloadSession();
+            if (session.nodeExists(path)) {
+                session.getNode(path).remove();
+                session.save();
+            }
+        }
+    }
+
+    private void reloadSession() throws RepositoryException {
+        JCRSessionFactory.getInstance().closeAllSessions();
+        session = JCRSessionFactory.getInstance().getCurrentUserSession(Constants.EDIT_WORKSPACE, Locale.ENGLISH);
+    }
+
     @Test
     public void testImportExport() throws Exception {
         try {
@@ -48,9 +48,16 @@ import org.jahia.modules.external.ExternalDataSource;
 import org.jahia.modules.external.ExternalQuery;
 
 import javax.jcr.RepositoryException;
+import java.util.Iterator;
 import java.util.List;
 
-public class SupportCountMappedDatabaseDataSource extends MappedDatabaseDataSource implements ExternalDataSource.SupportCount {
+public class SupportCountMappedDatabaseDataSource extends MappedDatabaseDataSource implements ExternalDataSource.SupportCount,
+        ExternalDataSource.SearchableIterator {
+
+    @Override
+    public Iterator<String> searchIterator(ExternalQuery query) throws RepositoryException {
+        return search(query).iterator();
+    }
 
     @Override
     public long count(ExternalQuery query) throws RepositoryException {
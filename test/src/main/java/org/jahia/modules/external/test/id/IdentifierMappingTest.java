@@ -0,0 +1,150 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.test.id;
+
+import org.jahia.modules.external.ExternalContentStoreProvider;
+import org.jahia.modules.external.ExternalProviderInitializerService;
+import org.jahia.services.content.JCRSessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the bulk mapping of external IDs to internal UUIDs.
+ */
+public class IdentifierMappingTest {
+
+    private static final String PROVIDER_KEY = "IdentifierMappingTest";
+
+    private ExternalProviderInitializerService service;
+    private String providerId;
+    // removing the provider does not flush the identifier cache, the IDs of each run must not have been seen before
+    private String root;
+
+    @Before
+    public void setUp() throws Exception {
+        service = ((ExternalContentStoreProvider) JCRSessionFactory.getInstance().getProviders().get("ExternalMappedDatabaseProvider"))
+                .getExternalProviderInitializerService();
+        service.removeProvider(PROVIDER_KEY);
+        providerId = String.valueOf(service.getProviderId(PROVIDER_KEY));
+        root = "/" + UUID.randomUUID();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        service.removeProvider(PROVIDER_KEY);
+    }
+
+    private List<String> externalIds(String prefix, int count) {
+        List<String> ids = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(root + "/" + prefix + "/" + i);
+        }
+        return ids;
+    }
+
+    @Test
+    public void testMapMoreThanOneBatch() throws Exception {
+        // more than two batches of inserts
+        List<String> ids = externalIds("batches", 1234);
+        Map<String, String> mapped = service.mapInternalIdentifiers(ids, PROVIDER_KEY, providerId);
+
+        assertEquals(ids, new ArrayList<String>(mapped.keySet()));
+        assertEquals("Internal UUIDs should be unique", ids.size(), new HashSet<String>(mapped.values()).size());
+        for (String uuid : mapped.values()) {
+            assertTrue(uuid.startsWith(providerId + "-"));
+        }
+        assertEquals(mapped, service.getInternalIdentifiers(ids, PROVIDER_KEY));
+        assertEquals(mapped.get(ids.get(1233)), service.getInternalIdentifier(ids.get(1233), PROVIDER_KEY));
+    }
+
+    @Test
+    public void testMapDuplicatedIds() throws Exception {
+        List<String> ids = externalIds("duplicates", 10);
+        List<String> duplicated = new ArrayList<String>(ids);
+        duplicated.addAll(ids);
+        Map<String, String> mapped = service.mapInternalIdentifiers(duplicated, PROVIDER_KEY, providerId);
+
+        assertEquals(ids, new ArrayList<String>(mapped.keySet()));
+        assertEquals(mapped, service.getInternalIdentifiers(ids, PROVIDER_KEY));
+    }
+
+    @Test
+    public void testMixedMappedAndUnmappedIds() throws Exception {
+        List<String> ids = externalIds("mixed", 700);
+        Map<String, String> existing = new HashMap<String, String>();
+        for (int i = 0; i < ids.size(); i += 3) {
+            existing.put(ids.get(i), service.mapInternalIdentifier(ids.get(i), PROVIDER_KEY, providerId));
+        }
+        // already mapped, whatever the batch they are read in
+        existing.putAll(service.mapInternalIdentifiers(ids.subList(550, 560), PROVIDER_KEY, providerId));
+
+        // done the same way as the provider : only the missing ones are mapped, the existing mappings are kept
+        Map<String, String> internalIds = service.getInternalIdentifiers(ids, PROVIDER_KEY);
+        assertEquals(existing, internalIds);
+        List<String> missingIds = new ArrayList<String>();
+        for (String id : ids) {
+            if (!internalIds.containsKey(id)) {
+                missingIds.add(id);
+            }
+        }
+        Map<String, String> created = service.mapInternalIdentifiers(missingIds, PROVIDER_KEY, providerId);
+        assertEquals(new HashSet<String>(missingIds), created.keySet());
+        for (String uuid : created.values()) {
+            assertFalse(existing.containsValue(uuid));
+        }
+        internalIds.putAll(created);
+
+        assertEquals(ids.size(), internalIds.size());
+        assertEquals(ids.size(), new HashSet<String>(internalIds.values()).size());
+        assertEquals(internalIds, service.getInternalIdentifiers(ids, PROVIDER_KEY));
+        for (Map.Entry<String, String> entry : existing.entrySet()) {
+            assertEquals(entry.getValue(), service.getInternalIdentifier(entry.getKey(), PROVIDER_KEY));
+        }
+    }
+}
@@ -52,6 +52,7 @@ import org.apache.commons.httpclient.methods.StringRequestEntity;
 import org.jahia.bin.Jahia;
 import org.jahia.modules.external.ExternalData;
 import org.jahia.modules.external.events.EventService;
+import org.jahia.modules.external.events.ExternalEventQueue;
 import org.jahia.osgi.BundleUtils;
 import org.jahia.registries.ServicesRegistry;
 import org.jahia.services.content.ApiEvent;
@@ -384,6 +385,63 @@ public class ApiEventTest  extends JahiaTestCase {
         });
     }
 
+    @Test
+    public void testQueuedEvents() {
+        ExternalEventQueue queue = new ExternalEventQueue(JCRSessionFactory.getInstance().getProviders().get(PROVIDER), 1, 10, 2000);
+        queue.start();
+        try {
+            executeListeners(() -> {
+                ApiEventImplTest apiEvent = new ApiEventImplTest();
+                apiEvent.setPath("/tata");
+                ApiEventImplTest duplicateEvent = new ApiEventImplTest();
+                duplicateEvent.setPath("/tata");
+                assertEquals(ExternalEventQueue.OfferResult.ACCEPTED, queue.offer(Arrays.asList(apiEvent, duplicateEvent)));
+                assertEquals(1, queue.getDepth());
+                assertEquals(1, queue.getCoalescedCount());
+
+                ApiEventImplTest otherEvent = new ApiEventImplTest();
+                otherEvent.setPath("/toto");
+                assertEquals(ExternalEventQueue.OfferResult.QUEUE_FULL, queue.offer(Collections.singleton(otherEvent)));
+                assertEquals(1, queue.getRejectedCount());
+
+                long end = System.currentTimeMillis() + 10000;
+                while (queue.getProcessedCount() == 0 && System.currentTimeMillis() < end) {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        fail(e.getMessage());
+                    }
+                }
+                assertEquals(1, queue.getProcessedCount());
+                assertEquals(0, queue.getDepth());
+                return null;
+            }, simpleEventCB);
+        } finally {
+            queue.stop();
+        }
+
+        ApiEventImplTest apiEvent = new ApiEventImplTest();
+        apiEvent.setPath("/tata");
+        assertEquals(ExternalEventQueue.OfferResult.STOPPED, queue.offer(Collections.singleton(apiEvent)));
+    }
+
+    @Test
+    public void testQueuedEventsProcessedOnStop() {
+        ExternalEventQueue queue = new ExternalEventQueue(JCRSessionFactory.getInstance().getProviders().get(PROVIDER), 10, 10, 60000);
+        queue.start();
+        executeListeners(() -> {
+            ApiEventImplTest apiEvent = new ApiEventImplTest();
+            apiEvent.setPath("/tata");
+            assertEquals(ExternalEventQueue.OfferResult.ACCEPTED, queue.offer(Collections.singleton(apiEvent)));
+            // the batch delay has not expired, the accepted event is processed when stopping
+            queue.stop();
+            assertEquals(1, queue.getProcessedCount());
+            assertEquals(0, queue.getDepth());
+            assertFalse(queue.isRunning());
+            return null;
+        }, simpleEventCB);
+    }
+
     private int executeCall(String body, String provider, String apiKey) throws IOException {
         HttpClient client = new HttpClient();
 
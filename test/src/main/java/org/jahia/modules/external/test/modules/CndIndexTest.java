@@ -0,0 +1,227 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.modules.external.test.modules;
+
+import org.apache.commons.io.FileUtils;
+import org.jahia.modules.external.ExternalData;
+import org.jahia.modules.external.modules.CndIndex;
+import org.jahia.modules.external.modules.ModulesDataSource;
+import org.jahia.services.content.nodetypes.NodeTypeRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.FileSystemResource;
+
+import javax.jcr.nodetype.NoSuchNodeTypeException;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the index of the definitions files of the modules data source.
+ */
+public class CndIndexTest {
+
+    private static final String SYSTEM_ID = "cnd-index-test";
+    private static final String CND_PATH = "/META-INF/definitions.cnd";
+
+    private static final String NAMESPACES = "<nt = 'http://www.jcp.org/jcr/nt/1.0'>\n" +
+            "<cndtest = 'http://www.jahia.org/cndtest/nt/1.0'>\n\n";
+
+    private static final String DEFINITIONS = NAMESPACES +
+            "[cndtest:item] > nt:base\n" +
+            " - title (string)\n" +
+            " - * (string)\n" +
+            " + * (nt:base)\n\n" +
+            "[cndtest:folder] > nt:base\n" +
+            " + items (cndtest:item)\n" +
+            " + * (cndtest:item)\n\n" +
+            "[cndtest:specialItem] > cndtest:item\n" +
+            " - special (boolean)\n";
+
+    private static final String CHANGED_DEFINITIONS = NAMESPACES +
+            "[cndtest:item] > nt:base\n" +
+            " - title (string)\n\n" +
+            "[cndtest:other] > nt:base\n" +
+            " + item (cndtest:item)\n";
+
+    private File cndFile;
+
+    @Before
+    public void setUp() throws Exception {
+        cndFile = Files.createTempFile("definitions", ".cnd").toFile();
+        FileUtils.writeStringToFile(cndFile, DEFINITIONS, StandardCharsets.UTF_8);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(cndFile);
+    }
+
+    private NodeTypeRegistry loadRegistry() throws Exception {
+        NodeTypeRegistry registry = new NodeTypeRegistry();
+        for (Map.Entry<String, File> entry : NodeTypeRegistry.getSystemDefinitionsFiles().entrySet()) {
+            registry.addDefinitionsFile(entry.getValue(), entry.getKey());
+        }
+        registry.addDefinitionsFile(new FileSystemResource(cndFile), SYSTEM_ID);
+        return registry;
+    }
+
+    @Test
+    public void testIndex() throws Exception {
+        CndIndex cndIndex = new CndIndex();
+        assertNull(cndIndex.get(CND_PATH));
+        CndIndex.CndFile indexed = cndIndex.put(CND_PATH, loadRegistry(), SYSTEM_ID, cndFile);
+        assertSame(indexed, cndIndex.get(CND_PATH));
+
+        assertEquals(new HashSet<>(Arrays.asList("cndtest:item", "cndtest:folder", "cndtest:specialItem")),
+                new HashSet<>(indexed.getNodeTypeNames()));
+        assertEquals(new HashSet<>(Arrays.asList("title", ModulesDataSource.UNSTRUCTURED_PROPERTY + "1", ModulesDataSource.UNSTRUCTURED_CHILD_NODE + "nt@@base")),
+                new HashSet<>(indexed.getItemNames("cndtest:item")));
+        assertNull(indexed.getItemNames("cndtest:missing"));
+
+        CndIndex.CndNodeType specialItem = indexed.getNodeType("cndtest:specialItem");
+        assertEquals(Collections.singletonList("cndtest:item"), specialItem.getSupertypeNames());
+        ExternalData specialItemData = specialItem.getData().toExternalData(CND_PATH + "/cndtest_specialItem");
+        assertEquals(ModulesDataSource.JNT_PRIMARY_NODE_TYPE, specialItemData.getType());
+        assertEquals(CND_PATH + "/cndtest_specialItem", specialItemData.getPath());
+        assertArrayEquals(new String[]{"cndtest:item"}, specialItemData.getProperties().get("j:supertype"));
+
+        CndIndex.CndItem title = indexed.getItem("cndtest:item", "title");
+        assertEquals("jnt:propertyDefinition", title.getType());
+        assertArrayEquals(new String[]{"String"}, title.toExternalData("/title").getProperties().get(ModulesDataSource.J_REQUIRED_TYPE));
+        assertEquals("jnt:unstructuredPropertyDefinition", indexed.getItem("cndtest:item", ModulesDataSource.UNSTRUCTURED_PROPERTY + "1").getType());
+        assertEquals("jnt:childNodeDefinition", indexed.getItem("cndtest:folder", "items").getType());
+        assertNull(indexed.getItem("cndtest:folder", "missing"));
+
+        try {
+            indexed.getNodeType("cndtest:missing");
+            fail("Node type should not be indexed");
+        } catch (NoSuchNodeTypeException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testIndexIsASnapshot() throws Exception {
+        NodeTypeRegistry registry = loadRegistry();
+        CndIndex.CndFile indexed = new CndIndex().put(CND_PATH, registry, SYSTEM_ID, cndFile);
+
+        // changes to the registry are not seen until the file is indexed again
+        registry.unregisterNodeType("cndtest:specialItem");
+        assertTrue(indexed.getNodeTypeNames().contains("cndtest:specialItem"));
+        assertNotNull(indexed.getNodeType("cndtest:specialItem"));
+        assertNotNull(indexed.getItem("cndtest:specialItem", "special"));
+
+        // the data returned to the caller is a copy
+        ExternalData data = indexed.getItem("cndtest:item", "title").toExternalData("/title");
+        data.getProperties().get(ModulesDataSource.J_REQUIRED_TYPE)[0] = "Long";
+        data.getProperties().clear();
+        assertArrayEquals(new String[]{"String"}, indexed.getItem("cndtest:item", "title").toExternalData("/title").getProperties().get(ModulesDataSource.J_REQUIRED_TYPE));
+
+        try {
+            indexed.getNodeTypeNames().add("cndtest:added");
+            fail("Indexed node type names should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReferencingTypes() throws Exception {
+        CndIndex.CndFile indexed = new CndIndex().put(CND_PATH, loadRegistry(), SYSTEM_ID, cndFile);
+
+        // looked up when renaming a node type, to update the super types and the child node definitions using it
+        assertEquals(new HashSet<>(Arrays.asList("cndtest:folder", "cndtest:specialItem")), indexed.getReferencingTypes("cndtest:item"));
+        assertTrue(indexed.getReferencingTypes("cndtest:folder").isEmpty());
+        assertTrue(indexed.getReferencingTypes("cndtest:missing").isEmpty());
+
+        try {
+            indexed.getReferencingTypes("cndtest:item").add("cndtest:added");
+            fail("Referencing types should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReindexOnFileChange() throws Exception {
+        CndIndex cndIndex = new CndIndex();
+        // indexed when written by the data source, with the digest of the written content
+        byte[] digest = CndIndex.newDigest().digest(DEFINITIONS.getBytes(StandardCharsets.UTF_8));
+        CndIndex.CndFile indexed = cndIndex.put(CND_PATH, loadRegistry(), SYSTEM_ID, cndFile.lastModified(), digest);
+
+        // a change written by the data source itself is already indexed and skipped by the file monitor
+        assertTrue(cndIndex.isIndexed(CND_PATH, cndFile));
+        // as well as a file touched without any change
+        assertTrue(cndFile.setLastModified(indexed.getLastModified() + 2000));
+        assertTrue(cndIndex.isIndexed(CND_PATH, cndFile));
+
+        // a change done outside of the data source is detected, even with the same modification date and size
+        FileUtils.writeStringToFile(cndFile, DEFINITIONS.replace("cndtest:specialItem", "cndtest:specialItex"), StandardCharsets.UTF_8);
+        assertTrue(cndFile.setLastModified(indexed.getLastModified()));
+        assertEquals(DEFINITIONS.length(), cndFile.length());
+        assertFalse(cndIndex.isIndexed(CND_PATH, cndFile));
+
+        FileUtils.writeStringToFile(cndFile, CHANGED_DEFINITIONS, StandardCharsets.UTF_8);
+        assertFalse(cndIndex.isIndexed(CND_PATH, cndFile));
+
+        CndIndex.CndFile reindexed = cndIndex.put(CND_PATH, loadRegistry(), SYSTEM_ID, cndFile);
+        assertSame(reindexed, cndIndex.get(CND_PATH));
+        assertTrue(cndIndex.isIndexed(CND_PATH, cndFile));
+        assertEquals(new HashSet<>(Arrays.asList("cndtest:item", "cndtest:other")), new HashSet<>(reindexed.getNodeTypeNames()));
+        assertEquals(Collections.singletonList("title"), reindexed.getItemNames("cndtest:item"));
+        assertEquals(Collections.singleton("cndtest:other"), reindexed.getReferencingTypes("cndtest:item"));
+
+        // readers holding the previous snapshot still see the previous definitions
+        assertTrue(indexed.getNodeTypeNames().contains("cndtest:specialItem"));
+
+        cndIndex.remove(CND_PATH);
+        assertNull(cndIndex.get(CND_PATH));
+        assertFalse(cndIndex.isIndexed(CND_PATH, cndFile));
+    }
+}
@@ -44,11 +44,13 @@
 package org.jahia.modules.external.test.vfs;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.jahia.ajax.gwt.client.data.definition.GWTJahiaNodeProperty;
 import org.jahia.ajax.gwt.client.data.node.GWTJahiaNode;
 import org.jahia.ajax.gwt.client.service.GWTJahiaServiceException;
 import org.jahia.ajax.gwt.helper.NavigationHelper;
 import org.jahia.api.Constants;
+import org.jahia.modules.external.vfs.VFSBinaryImpl;
 import org.jahia.modules.external.vfs.factory.VFSMountPointFactory;
 import org.jahia.modules.external.vfs.factory.VFSMountPointFactoryHandler;
 import org.jahia.services.SpringContextSingleton;
@@ -68,9 +70,11 @@ import javax.jcr.*;
 import javax.jcr.nodetype.NodeType;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.channels.Channels;
 import java.util.*;
 
 import static org.junit.Assert.*;
@@ -496,6 +500,74 @@ public class VFSContentStoreProviderTest {
         }
     }
 
+    @Test
+    public void testBinaryPositionalRead() throws Exception {
+        JahiaUser jahiaRootUser = JahiaAdminUser.getAdminUser(null);
+        String smallName = "small_" + System.currentTimeMillis() + ".bin";
+        String largeName = "large_" + System.currentTimeMillis() + ".bin";
+        byte[] smallContent = getTestContent(10000);
+        byte[] largeContent = getTestContent((int) VFSBinaryImpl.MAPPED_READ_THRESHOLD + 10000);
+        File smallFile = new File(dynamicMountDir, smallName);
+        File largeFile = new File(dynamicMountDir, largeName);
+        try {
+            FileUtils.writeByteArrayToFile(smallFile, smallContent);
+            FileUtils.writeByteArrayToFile(largeFile, largeContent);
+
+            VFSMountPointFactory vfsMountPointFactory = new VFSMountPointFactory();
+            vfsMountPointFactory.setName(MOUNTS_DYNAMIC_MOUNT_POINT_NAME);
+            vfsMountPointFactory.setRoot("file://" + dynamicMountDir.getAbsolutePath());
+            vfsMountPointFactoryHandler.save(vfsMountPointFactory);
+
+            getCleanSession();
+            assertPositionalReads(englishEditSession, smallName, smallContent);
+            assertPositionalReads(englishEditSession, largeName, largeContent);
+        } finally {
+            unMountDynamicMountPoint();
+            removeDynamicMountPoint(jahiaRootUser);
+            FileUtils.deleteQuietly(smallFile);
+            FileUtils.deleteQuietly(largeFile);
+        }
+    }
+
+    private void assertPositionalReads(JCRSessionWrapper session, String name, byte[] content) throws Exception {
+        Binary binary = getNode(session, MOUNTS_DYNAMIC_MOUNT_POINT_TARGET + "/" + name).getNode(Constants.JCR_CONTENT)
+                .getProperty(Constants.JCR_DATA).getBinary();
+        try {
+            assertEquals("Wrong binary size", content.length, binary.getSize());
+            byte[] buffer = new byte[100];
+            for (int position : new int[]{0, 4096, content.length - 100}) {
+                assertEquals("Wrong number of bytes read at " + position, 100, binary.read(buffer, position));
+                assertArrayEquals("Wrong bytes read at " + position, Arrays.copyOfRange(content, position, position + 100), buffer);
+            }
+            assertEquals("Wrong number of bytes read at the end", 10, binary.read(buffer, content.length - 10));
+            assertArrayEquals("Wrong bytes read at the end", Arrays.copyOfRange(content, content.length - 10, content.length), Arrays.copyOf(buffer, 10));
+            assertEquals("Read past the end should return -1", -1, binary.read(buffer, content.length));
+
+            assertTrue("Local files should be read through VFSBinaryImpl", binary instanceof VFSBinaryImpl);
+            int position = content.length - 5000;
+            byte[] end = Arrays.copyOfRange(content, position, content.length);
+            InputStream is = ((VFSBinaryImpl) binary).getStream(position);
+            try {
+                assertArrayEquals("Stream at position does not match the content", end, IOUtils.toByteArray(is));
+            } finally {
+                IOUtils.closeQuietly(is);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals("Wrong number of bytes transferred", 5000, ((VFSBinaryImpl) binary).transferTo(position, 10000, Channels.newChannel(out)));
+            assertArrayEquals("Transferred range does not match the content", end, out.toByteArray());
+        } finally {
+            binary.dispose();
+        }
+    }
+
+    private static byte[] getTestContent(int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (i % 251);
+        }
+        return content;
+    }
+
     private JCRNodeWrapper getNode(JCRSessionWrapper session, String path) throws RepositoryException {
         try {
             JCRNodeWrapper node = session.getNode(path);
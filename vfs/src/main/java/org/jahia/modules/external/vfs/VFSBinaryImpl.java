@@ -45,18 +45,49 @@ package org.jahia.modules.external.vfs;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 import javax.jcr.Binary;
 import javax.jcr.RepositoryException;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.Capability;
 import org.apache.commons.vfs2.FileContent;
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.RandomAccessContent;
+import org.apache.commons.vfs2.provider.local.LocalFileName;
+import org.apache.commons.vfs2.util.RandomAccessMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * JCR {@link Binary} implementation which has VFS' {@link FileContent} as an underlying source.
+ * <p>
+ * Files of local file system mounts are read directly through a {@link FileChannel}, so that positional reads and
+ * ranges do not need to read the file from its beginning. The channel is opened on the first positional read or range
+ * and kept until the binary is disposed. Files larger than {@link #MAPPED_READ_THRESHOLD} are memory-mapped for
+ * positional reads.
+ * <p>
+ * Code serving a range of a file, e.g. for an HTTP range request, can check if the binary of the {@code jcr:data}
+ * property is a {@link VFSBinaryImpl} and then copy the range with {@link #transferTo(long, long, WritableByteChannel)}
+ * to the channel of the response, or read it from {@link #getStream(long)}, instead of skipping the beginning of
+ * {@link #getStream()}:
+ * <pre>
+ * Binary binary = node.getProperty("jcr:data").getBinary();
+ * if (binary instanceof VFSBinaryImpl) {
+ *     ((VFSBinaryImpl) binary).transferTo(start, length, Channels.newChannel(response.getOutputStream()));
+ * }
+ * </pre>
  * 
  * @author Sergiy Shyrkov
  */
@@ -64,8 +95,21 @@ public class VFSBinaryImpl implements Binary {
     
     private static final Logger logger = LoggerFactory.getLogger(VFSBinaryImpl.class);
 
+    /**
+     * Size above which positional reads on local files go through a memory-mapped buffer.
+     */
+    public static final long MAPPED_READ_THRESHOLD = 8 * 1024 * 1024;
+
     private FileContent fileContent;
 
+    private Path localFile;
+
+    private long size = -1;
+
+    private FileChannel channel;
+
+    private MappedByteBuffer mappedContent;
+
     /**
      * Initializes an instance of this class with the provided VFS file.
      * 
@@ -75,10 +119,28 @@ public class VFSBinaryImpl implements Binary {
     public VFSBinaryImpl(FileContent fileContent) {
         super();
         this.fileContent = fileContent;
+        this.localFile = getLocalFile(fileContent.getFile());
+    }
+
+    private static Path getLocalFile(FileObject file) {
+        FileName name = file.getName();
+        if (name instanceof LocalFileName) {
+            try {
+                return Paths.get(((LocalFileName) name).getRootFile() + name.getPathDecoded());
+            } catch (Exception e) {
+                logger.debug("Cannot resolve local file for " + name + ", content will be read through VFS", e);
+            }
+        }
+        return null;
     }
 
     @Override
     public void dispose() {
+        mappedContent = null;
+        synchronized (this) {
+            IOUtils.closeQuietly(channel);
+            channel = null;
+        }
         try {
             fileContent.close();
         } catch (FileSystemException e) {
@@ -86,13 +148,20 @@ public class VFSBinaryImpl implements Binary {
         }
     }
 
+    /**
+     * Returns the size of the file, without opening its content. The size is read once and then kept for the
+     * lifetime of this binary.
+     */
     @Override
     public long getSize() throws RepositoryException {
-        try {
-            return fileContent.getSize();
-        } catch (FileSystemException e) {
-            throw new RepositoryException(e);
+        if (size < 0) {
+            try {
+                size = localFile != null ? Files.size(localFile) : fileContent.getSize();
+            } catch (IOException e) {
+                throw new RepositoryException(e);
+            }
         }
+        return size;
     }
 
     @Override
@@ -104,17 +173,155 @@ public class VFSBinaryImpl implements Binary {
         }
     }
 
+    /**
+     * Returns a stream on the content of the file, starting at the specified position. The position is reached
+     * without reading the content before it when the file is local or when the file system supports random access.
+     *
+     * @param position the position in the file where the stream starts
+     * @return a stream on the file content, to be closed by the caller
+     * @throws IOException if the content cannot be read
+     * @throws RepositoryException if the content cannot be opened
+     */
+    public InputStream getStream(long position) throws IOException, RepositoryException {
+        if (position <= 0) {
+            return getStream();
+        }
+        if (localFile != null) {
+            FileChannel channel = FileChannel.open(localFile, StandardOpenOption.READ);
+            try {
+                channel.position(position);
+            } catch (IOException e) {
+                IOUtils.closeQuietly(channel);
+                throw e;
+            }
+            return Channels.newInputStream(channel);
+        }
+        if (fileContent.getFile().getFileSystem().hasCapability(Capability.RANDOM_ACCESS_READ)) {
+            final RandomAccessContent content = fileContent.getRandomAccessContent(RandomAccessMode.READ);
+            try {
+                content.seek(position);
+                return new RandomAccessContentInputStream(content);
+            } catch (IOException e) {
+                content.close();
+                throw e;
+            }
+        }
+        InputStream is = getStream();
+        try {
+            IOUtils.skipFully(is, position);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(is);
+            throw e;
+        }
+        return is;
+    }
+
     @Override
     public int read(byte[] b, long position) throws IOException, RepositoryException {
+        if (position < 0) {
+            throw new IllegalArgumentException("Negative position: " + position);
+        }
+        if (localFile != null) {
+            FileChannel channel = getChannel();
+            long fileSize = channel.size();
+            if (position >= fileSize) {
+                return -1;
+            }
+            if (b.length == 0) {
+                return 0;
+            }
+            if (fileSize > MAPPED_READ_THRESHOLD && fileSize <= Integer.MAX_VALUE) {
+                ByteBuffer buffer = getMappedContent(channel, fileSize).duplicate();
+                buffer.position((int) position);
+                int read = Math.min(b.length, buffer.remaining());
+                buffer.get(b, 0, read);
+                return read;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(b);
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position + buffer.position());
+                if (read < 0) {
+                    break;
+                }
+            }
+            return buffer.position() > 0 ? buffer.position() : -1;
+        }
+        if (position >= getSize()) {
+            return -1;
+        }
+        if (b.length == 0) {
+            return 0;
+        }
         InputStream is = null;
-        int read = 0;
         try {
-            is = getStream();
-            read = is.read(b, (int) position, b.length);
+            is = getStream(position);
+            int read = IOUtils.read(is, b);
+            return read > 0 ? read : -1;
         } finally {
             IOUtils.closeQuietly(is);
         }
-        return read;
+    }
+
+    /**
+     * Transfers a range of the file content to the specified channel, e.g. the channel of a servlet response when
+     * serving a range request. Local files are transferred with {@link FileChannel#transferTo(long, long,
+     * WritableByteChannel)}, which lets the operating system copy the content without going through the heap.
+     *
+     * @param position the position of the first byte to transfer
+     * @param count    the maximum number of bytes to transfer
+     * @param target   the channel to write to
+     * @return the number of bytes transferred
+     * @throws IOException if the content cannot be read or written
+     * @throws RepositoryException if the content cannot be opened
+     */
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException, RepositoryException {
+        if (localFile != null) {
+            FileChannel channel = getChannel();
+            count = Math.min(count, channel.size() - position);
+            long transferred = 0;
+            while (transferred < count) {
+                long n = channel.transferTo(position + transferred, count - transferred, target);
+                if (n <= 0) {
+                    break;
+                }
+                transferred += n;
+            }
+            return transferred;
+        }
+        count = Math.min(count, getSize() - position);
+        if (count <= 0) {
+            return 0;
+        }
+        InputStream is = null;
+        try {
+            is = getStream(position);
+            return IOUtils.copyLarge(is, Channels.newOutputStream(target), 0, count);
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    /**
+     * Returns the channel reading the local file, opened once for all the positional reads of this binary. Positional
+     * reads and transfers do not change the position of the channel, so it can be shared.
+     */
+    private synchronized FileChannel getChannel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(localFile, StandardOpenOption.READ);
+        }
+        return channel;
+    }
+
+    /**
+     * Returns the file mapped in memory, mapped again if its size changed since it was mapped.
+     */
+    private MappedByteBuffer getMappedContent(FileChannel channel, long fileSize) throws IOException {
+        MappedByteBuffer buffer = mappedContent;
+        if (buffer == null || buffer.capacity() != fileSize) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            mappedContent = buffer;
+        }
+        return buffer;
     }
 
     @Override
@@ -133,4 +340,38 @@ public class VFSBinaryImpl implements Binary {
     public int hashCode() {
         return fileContent.hashCode();
     }
+
+    /**
+     * Stream over a {@link RandomAccessContent}, which closes the content when it is closed.
+     */
+    private static class RandomAccessContentInputStream extends InputStream {
+
+        private final RandomAccessContent content;
+
+        private final InputStream delegate;
+
+        RandomAccessContentInputStream(RandomAccessContent content) throws IOException {
+            this.content = content;
+            this.delegate = content.getInputStream();
+        }
+
+        @Override
+        public int read() throws IOException {
+            return delegate.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return delegate.read(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                delegate.close();
+            } finally {
+                content.close();
+            }
+        }
+    }
 }
@@ -46,6 +46,7 @@ package org.jahia.modules.external.vfs;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.vfs2.*;
+import org.apache.commons.vfs2.provider.local.LocalFileName;
 import org.apache.jackrabbit.util.ISO8601;
 import org.jahia.api.Constants;
 import org.jahia.modules.external.ExternalData;
@@ -64,12 +65,18 @@ import javax.jcr.nodetype.NoSuchNodeTypeException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 
 /**
  * VFS Implementation of ExternalDataSource
  */
-public class VFSDataSource implements ExternalDataSource, ExternalDataSource.Writable, ExternalDataSource.CanLoadChildrenInBatch {
+public class VFSDataSource implements ExternalDataSource, ExternalDataSource.Writable, ExternalDataSource.CanLoadChildrenInBatch,
+        ExternalDataSource.CanLoadChildrenByPage {
     private static final List<String> JCR_CONTENT_LIST = Arrays.asList(Constants.JCR_CONTENT);
     private static final Set<String> SUPPORTED_NODE_TYPES = new HashSet<String>(Arrays.asList(Constants.JAHIANT_FILE, Constants.JAHIANT_FOLDER, Constants.JCR_CONTENT));
     private static final Logger logger = LoggerFactory.getLogger(VFSDataSource.class);
@@ -77,6 +84,7 @@ public class VFSDataSource implements ExternalDataSource, ExternalDataSource.Wri
     private FileObject root;
     private String rootPath;
     private FileSystemManager manager;
+    private final boolean childrenListingOverridden = isOverridden(getClass(), "getChildren") || isOverridden(getClass(), "getChildrenNodes");
 
     /**
      * Defines the root point of the DataSource
@@ -208,6 +216,205 @@ public class VFSDataSource implements ExternalDataSource, ExternalDataSource.Wri
         return Collections.emptyList();
     }
 
+    /**
+     * Opens a cursor over the children of a folder. Folders of local file systems are read with a directory stream, kept
+     * open between pages, which does not build the whole listing : only the entries of each page are resolved. Other
+     * file systems list the whole folder. When {@link #getChildren(String)} or {@link #getChildrenNodes(String)} are
+     * overridden, the pages are cut from {@link #getChildrenNodes(String)}, so that the children of subclasses are kept.
+     */
+    @Override
+    public ChildrenCursor openChildrenCursor(String path) throws RepositoryException {
+        if (childrenListingOverridden) {
+            return new ListChildrenCursor(path, getChildrenNodes(path));
+        }
+        try {
+            if (!path.endsWith(JCR_CONTENT_SUFFIX)) {
+                FileObject fileObject = getFile(path);
+                if (fileObject.getType() == FileType.FILE) {
+                    return new ListChildrenCursor(path, Collections.singletonList(getFileContent(fileObject.getContent())));
+                } else if (fileObject.getType() == FileType.FOLDER) {
+                    Path folder = getLocalPath(fileObject);
+                    if (folder != null) {
+                        try {
+                            return new FilesChildrenCursor(Files.newDirectoryStream(folder));
+                        } catch (IOException e) {
+                            throw new RepositoryException("Cannot read children of " + path, e);
+                        }
+                    }
+                    fileObject.refresh();  //in case of folder, refresh because it could be changed external
+                    return new FilesChildrenCursor(Arrays.asList(fileObject.getChildren()).iterator());
+                } else if (!fileObject.exists()) {
+                    throw new PathNotFoundException(path);
+                }
+            }
+        } catch (FileSystemException e) {
+            logger.error("Cannot get node children", e);
+        }
+
+        return new ListChildrenCursor(path, Collections.<ExternalData>emptyList());
+    }
+
+    /**
+     * Counts the supported entries of folders, which are the children returned by {@link #openChildrenCursor(String)}.
+     * Returns -1 when {@link #getChildren(String)} or {@link #getChildrenNodes(String)} are overridden.
+     */
+    @Override
+    public long getChildrenCount(String path) throws RepositoryException {
+        if (childrenListingOverridden) {
+            return -1;
+        }
+        try {
+            if (!path.endsWith(JCR_CONTENT_SUFFIX)) {
+                FileObject fileObject = getFile(path);
+                if (fileObject.getType() == FileType.FILE) {
+                    return 1;
+                } else if (fileObject.getType() == FileType.FOLDER) {
+                    long count = 0;
+                    Path folder = getLocalPath(fileObject);
+                    if (folder != null) {
+                        try (DirectoryStream<Path> entries = Files.newDirectoryStream(folder)) {
+                            for (Path entry : entries) {
+                                if (getSupportedNodeTypes().contains(getDataType(manager.toFileObject(entry.toFile())))) {
+                                    count++;
+                                }
+                            }
+                        } catch (IOException | DirectoryIteratorException e) {
+                            logger.error("Cannot count node children", e);
+                            return -1;
+                        }
+                    } else {
+                        fileObject.refresh();  //in case of folder, refresh because it could be changed external
+                        for (FileObject object : fileObject.getChildren()) {
+                            if (getSupportedNodeTypes().contains(getDataType(object))) {
+                                count++;
+                            }
+                        }
+                    }
+                    return count;
+                } else if (!fileObject.exists()) {
+                    throw new PathNotFoundException(path);
+                }
+            }
+        } catch (FileSystemException e) {
+            logger.error("Cannot count node children", e);
+            return -1;
+        }
+
+        return 0;
+    }
+
+    private void addChild(List<ExternalData> children, FileObject object) throws FileSystemException {
+        children.add(getFile(object));
+        if (object.getType() == FileType.FILE) {
+            children.add(getFileContent(object.getContent()));
+        }
+    }
+
+    private static Path getLocalPath(FileObject fileObject) throws FileSystemException {
+        FileName name = fileObject.getName();
+        return name instanceof LocalFileName ? Paths.get(((LocalFileName) name).getRootFile() + name.getPathDecoded()) : null;
+    }
+
+    private static boolean isOverridden(Class<?> type, String methodName) {
+        try {
+            return type.getMethod(methodName, String.class).getDeclaringClass() != VFSDataSource.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Cursor over the supported entries of a folder, resolved page by page
+     */
+    private class FilesChildrenCursor implements ChildrenCursor {
+
+        private DirectoryStream<Path> stream;
+        private Iterator<Path> paths;
+        private Iterator<FileObject> files;
+
+        FilesChildrenCursor(DirectoryStream<Path> stream) {
+            this.stream = stream;
+            this.paths = stream.iterator();
+        }
+
+        FilesChildrenCursor(Iterator<FileObject> files) {
+            this.files = files;
+        }
+
+        @Override
+        public List<ExternalData> nextPage(int limit) throws RepositoryException {
+            List<ExternalData> children = new ArrayList<ExternalData>();
+            int count = 0;
+            try {
+                while (count < limit && hasNextFile()) {
+                    FileObject object = nextFile();
+                    if (getSupportedNodeTypes().contains(getDataType(object))) {
+                        addChild(children, object);
+                        count++;
+                    }
+                }
+            } catch (FileSystemException | DirectoryIteratorException e) {
+                close();
+                throw new RepositoryException("Cannot read node children", e);
+            }
+            if (count < limit) {
+                close();
+            }
+            return children;
+        }
+
+        private boolean hasNextFile() {
+            return paths != null ? paths.hasNext() : files.hasNext();
+        }
+
+        private FileObject nextFile() throws FileSystemException {
+            return paths != null ? manager.toFileObject(paths.next().toFile()) : files.next();
+        }
+
+        @Override
+        public void close() {
+            if (stream != null) {
+                IOUtils.closeQuietly(stream);
+                stream = null;
+                paths = Collections.<Path>emptyList().iterator();
+            }
+        }
+    }
+
+    /**
+     * Cursor cutting pages from a list of children and their descendants
+     */
+    private static class ListChildrenCursor implements ChildrenCursor {
+
+        private final String prefix;
+        private final Iterator<ExternalData> children;
+        private ExternalData next;
+
+        ListChildrenCursor(String path, List<ExternalData> children) {
+            this.prefix = path.endsWith("/") ? path : path + "/";
+            this.children = children.iterator();
+            this.next = this.children.hasNext() ? this.children.next() : null;
+        }
+
+        @Override
+        public List<ExternalData> nextPage(int limit) {
+            List<ExternalData> page = new ArrayList<ExternalData>();
+            int count = 0;
+            while (next != null) {
+                if (next.getPath().indexOf('/', prefix.length()) == -1 && count++ == limit) {
+                    break;
+                }
+                page.add(next);
+                next = children.hasNext() ? children.next() : null;
+            }
+            return page;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
     @Override
     public List<ExternalData> getChildrenNodes(String path) throws RepositoryException {
         try {